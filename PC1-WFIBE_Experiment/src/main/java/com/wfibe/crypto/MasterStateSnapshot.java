@@ -0,0 +1,215 @@
+package com.wfibe.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * KGC主状态快照
+ * 保存配对参数、生成元、Z、B1/B2、主公钥及预计算表，配置不变时重启直接加载，跳过Setup
+ *
+ * 格式：魔数(4) | 版本(4) | n(4) | m(4) | 固定基窗口(4) | 幂表标志(1) | 配对参数SHA-256(32) | IV(12) |
+ *       AES-256-GCM密文（含16字节标签）
+ * 文件头作为附加认证数据；密钥保存在单独的密钥文件中，首次保存时生成（仅属主可读写），
+ * 默认位置在数据目录之外（见SystemParameters.FilePaths.MASTER_STATE_KEY）
+ */
+public final class MasterStateSnapshot {
+
+    private static final int MAGIC = 0x57464D53;  // "WFMS"
+    private static final int VERSION = 2;
+    private static final int IV_LENGTH = 12;
+    private static final int PROFILE_LENGTH = 13 + 32;
+    private static final int HEADER_LENGTH = 8 + PROFILE_LENGTH + IV_LENGTH;
+    private static final int TAG_LENGTH = 16;
+    private static final int KEY_LENGTH = 32;
+
+    private MasterStateSnapshot() {
+    }
+
+    /**
+     * 决定主状态内容的全部配置；快照只在与期望配置逐项一致时加载
+     */
+    public static final class Profile {
+        private final int n;
+        private final int m;
+        private final String pairingParams;
+        private final int fixedBaseWindow;
+        private final boolean keyTables;
+
+        public Profile(int n, int m, String pairingParams, int fixedBaseWindow, boolean keyTables) {
+            this.n = n;
+            this.m = m;
+            this.pairingParams = pairingParams;
+            this.fixedBaseWindow = fixedBaseWindow;
+            this.keyTables = keyTables;
+        }
+
+        /**
+         * 已完成Setup（或已加载）的系统的配置
+         */
+        public static Profile of(WFIBESystem system) {
+            return new Profile(system.getVectorDim_n(), system.getVectorDim_m(), system.getPairingParams(),
+                    system.getFixedBaseWindow(), system.isKeyTablesEnabled());
+        }
+
+        /**
+         * 尚未Setup的系统以给定维度和配对参数执行Setup时的配置
+         */
+        public static Profile forSetup(WFIBESystem system, int n, int m, String pairingParams) {
+            return new Profile(n, m, pairingParams, system.getFixedBaseWindow(), system.isKeyTablesEnabled());
+        }
+
+        private byte[] encode() {
+            try {
+                return ByteBuffer.allocate(PROFILE_LENGTH)
+                        .putInt(n)
+                        .putInt(m)
+                        .putInt(fixedBaseWindow)
+                        .put((byte) (keyTables ? 1 : 0))
+                        .put(MessageDigest.getInstance("SHA-256")
+                                .digest(pairingParams.getBytes(StandardCharsets.UTF_8)))
+                        .array();
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+
+    /**
+     * 加密保存主状态，先写临时文件再原子替换，避免崩溃时留下不完整的快照
+     */
+    public static void save(WFIBESystem system, File file, File keyFile) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            system.writeMasterState(out);
+        }
+        byte[] plaintext = buffer.toByteArray();
+
+        byte[] iv = new byte[IV_LENGTH];
+        new SecureRandom().nextBytes(iv);
+        byte[] header = ByteBuffer.allocate(HEADER_LENGTH)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .put(Profile.of(system).encode())
+                .put(iv)
+                .array();
+
+        byte[] ciphertext;
+        try {
+            Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, loadOrCreateKey(keyFile), iv);
+            cipher.updateAAD(header);
+            ciphertext = cipher.doFinal(plaintext);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to seal master state", e);
+        } finally {
+            Arrays.fill(plaintext, (byte) 0);
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(header);
+            out.write(ciphertext);
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 加载快照：密文经内存映射读入，一次解密到堆缓冲区，群元素和预计算表再从该缓冲区按偏移解析
+     * 文件不存在或配置与expected不一致时返回null；格式错误或认证失败时抛出IOException
+     */
+    public static WFIBESystem load(File file, File keyFile, Profile expected) throws IOException {
+        if (!file.exists() || !keyFile.exists()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_LENGTH + TAG_LENGTH || size > Integer.MAX_VALUE) {
+                throw new IOException("Malformed master state snapshot");
+            }
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            byte[] header = new byte[HEADER_LENGTH];
+            mapped.get(header);
+            ByteBuffer headerBuf = ByteBuffer.wrap(header);
+            if (headerBuf.getInt() != MAGIC || headerBuf.getInt() != VERSION) {
+                throw new IOException("Unsupported master state snapshot");
+            }
+            byte[] profile = new byte[PROFILE_LENGTH];
+            headerBuf.get(profile);
+            if (!Arrays.equals(profile, expected.encode())) {
+                return null;
+            }
+            byte[] iv = new byte[IV_LENGTH];
+            headerBuf.get(iv);
+
+            // 密文从映射区直接解密到堆缓冲区，不先读入单独的密文数组
+            ByteBuffer plaintext = ByteBuffer.allocate((int) size - HEADER_LENGTH - TAG_LENGTH);
+            Cipher cipher = newCipher(Cipher.DECRYPT_MODE, readKey(keyFile), iv);
+            cipher.updateAAD(header);
+            cipher.doFinal(mapped, plaintext);
+            plaintext.flip();
+
+            try {
+                return WFIBESystem.readMasterState(plaintext);
+            } finally {
+                Arrays.fill(plaintext.array(), (byte) 0);
+            }
+
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Master state snapshot failed authentication", e);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed master state snapshot", e);
+        }
+    }
+
+    private static Cipher newCipher(int mode, byte[] key, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_LENGTH * 8, iv));
+        return cipher;
+    }
+
+    private static byte[] loadOrCreateKey(File keyFile) throws IOException {
+        if (keyFile.exists()) {
+            return readKey(keyFile);
+        }
+
+        byte[] key = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(key);
+
+        Path path = keyFile.toPath().toAbsolutePath();
+        try {
+            Files.createDirectories(path.getParent(), PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rwx------")));
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createDirectories(path.getParent());
+            Files.createFile(path);
+        }
+        Files.write(path, key);
+        return key;
+    }
+
+    private static byte[] readKey(File keyFile) throws IOException {
+        byte[] key = Files.readAllBytes(keyFile.toPath());
+        if (key.length != KEY_LENGTH) {
+            throw new IOException("Invalid snapshot key file: " + keyFile);
+        }
+        return key;
+    }
+}
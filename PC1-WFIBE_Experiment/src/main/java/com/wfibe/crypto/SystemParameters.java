@@ -41,6 +41,8 @@ public class SystemParameters {
     public static final class NetworkConfig {
         public static final String KGC_IP = "192.168.1.100";
         public static final int KGC_PORT = 8080;
+        public static final int KGC_BINARY_PORT = 8090;  // 二进制协议（NIO）端口
+        public static final int KGC_ADMIN_PORT = 8083;   // 实例管理端口，只监听本机回环地址
 
         public static final String SENDER_IP = "192.168.1.101";
         public static final int SENDER_PORT = 8081;
@@ -54,6 +56,49 @@ public class SystemParameters {
 
         // 缓冲区大小
         public static final int BUFFER_SIZE = 65536; // 64KB
+
+        // 单个批量密钥请求的最大条数；批量请求整体准入，一次预留全部排队名额，
+        // 只受AdmissionConfig.MAX_QUEUED_KEYGENS约束（须不大于它），不受CLIENT_BURST限制
+        public static final int MAX_BATCH_SIZE = 10000;
+    }
+
+    // 预计算配置
+    public static final class PrecomputationConfig {
+        // g1/g2固定基表的窗口位数（0表示不建表）
+        public static final int WINDOW_BITS = 5;
+    }
+
+    // KGC密钥缓存配置
+    public static final class KeyCacheConfig {
+        // 最多缓存的密钥数（0表示关闭缓存）
+        public static final int CAPACITY = 4096;
+
+        // 缓存项有效期（毫秒）
+        public static final long TTL_MILLIS = 10 * 60 * 1000;
+    }
+
+    // KGC实例配置
+    public static final class InstanceConfig {
+        // 同时存在的系统实例上限（含默认实例）；每个实例常驻主密钥和keyGen表
+        public static final int MAX_INSTANCES = 8;
+    }
+
+    // KGC准入控制配置
+    public static final class AdmissionConfig {
+        // 排队等待keyGen的请求上限，超出时立即拒绝
+        public static final int MAX_QUEUED_KEYGENS = 16384;
+
+        // 固定线程池模式下排队等待连接线程的连接上限，超出时直接关闭连接
+        public static final int MAX_QUEUED_CONNECTIONS = 1024;
+
+        // 每个客户端地址的令牌桶：每秒请求数（0表示不限速）和突发容量
+        // 突发容量远小于排队上限，单个客户端无法用单个请求占满队列；一个批量请求只占一个令牌，
+        // 其条数由NetworkConfig.MAX_BATCH_SIZE限制，且每个客户端同时只能有一个批量请求在处理
+        public static final double CLIENT_RATE_PER_SECOND = 1000;
+        public static final int CLIENT_BURST = 500;
+
+        // 排队时间SLO（毫秒），超过的请求在计算前丢弃；0表示不限
+        public static final long QUEUE_SLO_MILLIS = 5000;
     }
 
     // 文件路径配置
@@ -62,6 +107,10 @@ public class SystemParameters {
         public static final String LOGS_DIR = "logs/";
         public static final String FIGURES_DIR = "figures/";
         public static final String PUBLIC_PARAMS_FILE = "public_params.dat";
+        public static final String MASTER_STATE_SNAPSHOT = "master_state.snapshot";
+        // 快照密钥默认放在用户目录下，与快照分开存放；可用 -Dwfibe.snapshot.key=<路径> 覆盖
+        public static final String MASTER_STATE_KEY = System.getProperty("wfibe.snapshot.key",
+                System.getProperty("user.home") + "/.wfibe/master_state.key");
 
         // CSV文件名
         public static final String SETUP_PERFORMANCE_CSV = "setup_performance.csv";
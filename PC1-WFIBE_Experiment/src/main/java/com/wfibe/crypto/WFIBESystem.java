@@ -4,11 +4,18 @@ import it.unisa.dia.gas.jpbc.*;
 import it.unisa.dia.gas.jpbc.Element;
 import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
 import it.unisa.dia.gas.plaf.jpbc.pairing.a.TypeAPairing;
+import it.unisa.dia.gas.plaf.jpbc.field.base.AbstractElementPowPreProcessing;
 
 import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 import javax.crypto.spec.IvParameterSpec;
@@ -22,20 +29,38 @@ public class WFIBESystem implements Serializable {
     private static final long serialVersionUID = 1L;
 
     // 系统参数
+    private String pairingParams;
     private transient Pairing pairing;
     private transient Field G1, G2, GT, Zp;
     private transient Element g1, g2;
     private int n, m;
     private transient Element Z;
 
+    // g1/g2的固定基窗口表（窗口位数为0时不建表）
+    private transient ElementPowPreProcessing g1_pp, g2_pp;
+    private int fixedBaseWindow = SystemParameters.PrecomputationConfig.WINDOW_BITS;
+
     // 主密钥
     private transient Element[][] B1;
     private transient Element[][] B2;
 
+    // 主密钥的Montgomery limb形式（每行一个向量），keyGen的内积在其上计算
+    private transient ZrMontgomery zr;
+    private transient long[][] B1_limbs;
+    private transient long[][] B2_limbs;
+
     // 主公钥
     private transient Element[][] mpk1_h;
     private transient Element[][] mpk2_h;
 
+    // 密钥生成用的逐坐标幂表：keyTable1[i][j] = g2^{B1[i][j]}，keyTable2[i][j] = g2^{B2[i][j]}
+    private transient Element[][] keyTable1;
+    private transient Element[][] keyTable2;
+    private boolean keyTablesEnabled = true;
+
+    // Setup并行度（1表示串行）
+    private int setupParallelism = 1;
+
     // 性能监控
     private long lastSetupTime;
     private long lastKeyGenTime;
@@ -44,102 +69,222 @@ public class WFIBESystem implements Serializable {
      * 系统初始化（Setup阶段）
      */
     public SystemSetupResult setup(int vectorDim_n, int vectorDim_m, String pairingParams) {
+        return setup(vectorDim_n, vectorDim_m, pairingParams, PairingFactory.getPairing(pairingParams));
+    }
+
+    /**
+     * 使用已有的配对实例初始化，同一进程内的多个系统实例可共享配对和群结构
+     */
+    public SystemSetupResult setup(int vectorDim_n, int vectorDim_m, String pairingParams, Pairing pairing) {
         long startTime = System.nanoTime();
 
         this.n = vectorDim_n;
         this.m = vectorDim_m;
 
-        // 初始化配对
-        this.pairing = PairingFactory.getPairing(pairingParams);
-        this.G1 = pairing.getG1();
-        this.G2 = pairing.getG2();
-        this.GT = pairing.getGT();
-        this.Zp = pairing.getZr();
-
-        // 选择生成元
-        this.g1 = G1.newRandomElement().getImmutable();
-        this.g2 = G2.newRandomElement().getImmutable();
-
-        // 选择公开常量Z
-        this.Z = Zp.newRandomElement().getImmutable();
-
-        // 生成正交矩阵B1和B2
-        this.B1 = generateOrthogonalMatrix(2, n + 1);
-        this.B2 = generateOrthogonalMatrix(2, m + 1);
+        // 并行模式下各阶段中相互独立的运算分发到ForkJoin池
+        ForkJoinPool pool = setupParallelism > 1 ? new ForkJoinPool(setupParallelism) : null;
+        SystemSetupResult result = new SystemSetupResult();
 
-        // 计算主公钥
-        this.mpk1_h = new Element[2][n + 1];
-        for (int i = 0; i < 2; i++) {
-            for (int j = 0; j <= n; j++) {
-                mpk1_h[i][j] = g1.duplicate().powZn(B1[i][j]).getImmutable();
+        try {
+            // 初始化配对
+            this.pairingParams = pairingParams;
+            this.pairing = pairing;
+            this.G1 = pairing.getG1();
+            this.G2 = pairing.getG2();
+            this.GT = pairing.getGT();
+            this.Zp = pairing.getZr();
+
+            // 选择生成元
+            this.g1 = G1.newRandomElement().getImmutable();
+            this.g2 = G2.newRandomElement().getImmutable();
+
+            // 选择公开常量Z
+            this.Z = Zp.newRandomElement().getImmutable();
+
+            // 生成元固定后构建固定基表，主公钥和密钥生成的幂运算都走查表
+            if (fixedBaseWindow > 0) {
+                ElementPowPreProcessing[] tables = new ElementPowPreProcessing[2];
+                Element[] generators = {g1, g2};
+                forEachIndex(pool, 2, t ->
+                        tables[t] = new AbstractElementPowPreProcessing(generators[t], fixedBaseWindow));
+                this.g1_pp = tables[0];
+                this.g2_pp = tables[1];
+            } else {
+                this.g1_pp = null;
+                this.g2_pp = null;
             }
-        }
+            long phaseEnd = System.nanoTime();
+            result.generatorTime = (phaseEnd - startTime) / 1_000_000;
+
+            // 生成正交矩阵B1和B2
+            long phaseStart = phaseEnd;
+            this.zr = new ZrMontgomery(Zp.getOrder());
+            this.B1_limbs = randomMatrix(2, n + 1, pool);
+            this.B2_limbs = randomMatrix(2, m + 1, pool);
+            new ZpLinearAlgebra(zr, pool).orthogonalize(B1_limbs, B2_limbs);
+            this.B1 = toElements(B1_limbs);
+            this.B2 = toElements(B2_limbs);
+            phaseEnd = System.nanoTime();
+            result.matrixTime = (phaseEnd - phaseStart) / 1_000_000;
+
+            // 计算主公钥
+            phaseStart = phaseEnd;
+            this.mpk1_h = powTable(pool, B1, n, this::powG1);
+            this.mpk2_h = powTable(pool, B2, m, this::powG1);
+            phaseEnd = System.nanoTime();
+            result.mpkTime = (phaseEnd - phaseStart) / 1_000_000;
+
+            // 构建密钥生成幂表
+            phaseStart = phaseEnd;
+            if (keyTablesEnabled) {
+                this.keyTable1 = powTable(pool, B1, n, this::powG2);
+                this.keyTable2 = powTable(pool, B2, m, this::powG2);
+            } else {
+                this.keyTable1 = null;
+                this.keyTable2 = null;
+            }
+            phaseEnd = System.nanoTime();
+            result.keyTableTime = (phaseEnd - phaseStart) / 1_000_000;
 
-        this.mpk2_h = new Element[2][m + 1];
-        for (int i = 0; i < 2; i++) {
-            for (int j = 0; j <= m; j++) {
-                mpk2_h[i][j] = g1.duplicate().powZn(B2[i][j]).getImmutable();
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
             }
         }
 
         long endTime = System.nanoTime();
         lastSetupTime = (endTime - startTime) / 1_000_000;
 
-        SystemSetupResult result = new SystemSetupResult();
         result.setupTime = lastSetupTime;
+        result.setupThreads = setupParallelism;
         result.publicKeySize = calculatePublicKeySize();
         result.masterKeySize = calculateMasterKeySize();
+        result.keyTableSize = calculateKeyTableSize();
+        result.fixedBaseWindow = fixedBaseWindow;
+        result.fixedBaseTableSize = calculateFixedBaseTableSize();
         result.success = true;
 
         return result;
     }
 
     /**
-     * 密钥生成（KeyGen阶段）
+     * 对矩阵每个元素做幂运算：table[i][j] = pow(B[i][j])
+     * 用于主公钥 g1^{B[i][j]} 和密钥生成幂表 g2^{B[i][j]}，各元素相互独立
      */
-    public KeyGenResult keyGen(int[] attributeVector_SB, int[] policyVector_PA) {
-        long startTime = System.nanoTime();
+    private Element[][] powTable(ForkJoinPool pool, Element[][] B, int dim,
+                                 UnaryOperator<Element> pow) {
+        Element[][] table = new Element[2][dim + 1];
+        forEachIndex(pool, 2 * (dim + 1), t -> {
+            int i = t / (dim + 1);
+            int j = t % (dim + 1);
+            table[i][j] = pow.apply(B[i][j]);
+        });
+        return table;
+    }
 
-        KeyGenResult result = new KeyGenResult();
+    /**
+     * 对 0..count-1 执行body：pool为null时按顺序串行执行，否则在pool上并行执行
+     */
+    private void forEachIndex(ForkJoinPool pool, int count, IntConsumer body) {
+        if (pool == null) {
+            for (int t = 0; t < count; t++) {
+                body.accept(t);
+            }
+            return;
+        }
 
         try {
-            // 构造y_PA向量
-            Element[] y_PA = new Element[n + 1];
-            for (int i = 0; i < n; i++) {
-                y_PA[i] = Zp.newElement(policyVector_PA[i]);
-            }
-            y_PA[n] = Zp.newOneElement();
+            pool.submit(() -> IntStream.range(0, count).parallel().forEach(body)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Parallel setup interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Parallel setup failed", e.getCause());
+        }
+    }
 
-            // 计算sk_PA
-            Element k1_PA = Zp.newZeroElement();
-            Element k2_PA = Zp.newZeroElement();
+    /**
+     * 设置Setup使用的线程数，需在setup之前调用；1为串行，0表示使用全部核心
+     */
+    public void setSetupParallelism(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Setup parallelism must be non-negative");
+        }
+        this.setupParallelism = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+    }
 
-            for (int j = 0; j <= n; j++) {
-                k1_PA.add(B1[0][j].duplicate().mul(y_PA[j]));
-                k2_PA.add(B1[1][j].duplicate().mul(y_PA[j]));
-            }
+    /**
+     * g1^exp，有固定基表时查表
+     */
+    private Element powG1(Element exp) {
+        Element result = g1_pp != null ? g1_pp.powZn(exp) : g1.duplicate().powZn(exp);
+        return result.getImmutable();
+    }
 
-            Element sk_PA_1 = g2.duplicate().powZn(k1_PA).getImmutable();
-            Element sk_PA_2 = g2.duplicate().powZn(k2_PA).getImmutable();
+    /**
+     * g2^exp，有固定基表时查表
+     */
+    private Element powG2(Element exp) {
+        Element result = g2_pp != null ? g2_pp.powZn(exp) : g2.duplicate().powZn(exp);
+        return result.getImmutable();
+    }
 
-            // 构造y_SB向量
-            Element[] y_SB = new Element[m + 1];
-            for (int i = 0; i < m; i++) {
-                y_SB[i] = Zp.newElement(attributeVector_SB[i]);
-            }
-            y_SB[m] = Zp.newOneElement();
+    /**
+     * 设置g1/g2固定基表的窗口位数，需在setup之前调用，0表示不建表
+     * 每张表 (⌈|r|/k⌉ + 1) · 2^k 个群元素，k越大单次幂运算越快、表越大
+     */
+    public void setFixedBaseWindow(int windowBits) {
+        if (windowBits < 0 || windowBits > 16) {
+            throw new IllegalArgumentException("Window bits must be between 0 and 16");
+        }
+        this.fixedBaseWindow = windowBits;
+    }
 
-            // 计算sk_SB
-            Element k1_SB = Zp.newZeroElement();
-            Element k2_SB = Zp.newZeroElement();
+    /**
+     * 开关密钥生成幂表，需在setup之前调用；关闭后keyGen回到 g2^k 全长幂运算
+     */
+    public void setKeyTablesEnabled(boolean enabled) {
+        this.keyTablesEnabled = enabled;
+    }
 
-            for (int j = 0; j <= m; j++) {
-                k1_SB.add(B2[0][j].duplicate().mul(y_SB[j]));
-                k2_SB.add(B2[1][j].duplicate().mul(y_SB[j]));
+    /**
+     * 密钥生成（KeyGen阶段），稠密向量版本
+     */
+    public KeyGenResult keyGen(int[] attributeVector_SB, int[] policyVector_PA) {
+        return keyGen(SparseVector.fromDense(attributeVector_SB), SparseVector.fromDense(policyVector_PA));
+    }
+
+    /**
+     * 密钥生成（KeyGen阶段）
+     * 内积只在非零坐标上计算，最后一个坐标 y_n = y_m = 1 单独处理
+     */
+    public KeyGenResult keyGen(SparseVector attributeVector_SB, SparseVector policyVector_PA) {
+        long startTime = System.nanoTime();
+
+        KeyGenResult result = new KeyGenResult();
+
+        try {
+            if (policyVector_PA.getDimension() != n || attributeVector_SB.getDimension() != m) {
+                throw new IllegalArgumentException("Vector dimension mismatch: expected n=" + n +
+                        ", m=" + m + ", got " + policyVector_PA.getDimension() +
+                        ", " + attributeVector_SB.getDimension());
             }
 
-            Element sk_SB_1 = g2.duplicate().powZn(k1_SB).getImmutable();
-            Element sk_SB_2 = g2.duplicate().powZn(k2_SB).getImmutable();
+            Element sk_PA_1, sk_PA_2, sk_SB_1, sk_SB_2;
+
+            if (keyTablesEnabled && keyTable1 != null) {
+                // 查表路径：每个分量是非零坐标幂表项的小整数次幂之积
+                sk_PA_1 = combineKeyTable(keyTable1[0], policyVector_PA, n);
+                sk_PA_2 = combineKeyTable(keyTable1[1], policyVector_PA, n);
+                sk_SB_1 = combineKeyTable(keyTable2[0], attributeVector_SB, m);
+                sk_SB_2 = combineKeyTable(keyTable2[1], attributeVector_SB, m);
+            } else {
+                // 计算 k = Σ_j B[i][j]·y_j，再做g2幂运算
+                sk_PA_1 = powG2(innerProduct(B1_limbs[0], policyVector_PA, n));
+                sk_PA_2 = powG2(innerProduct(B1_limbs[1], policyVector_PA, n));
+                sk_SB_1 = powG2(innerProduct(B2_limbs[0], attributeVector_SB, m));
+                sk_SB_2 = powG2(innerProduct(B2_limbs[1], attributeVector_SB, m));
+            }
 
             // 组装密钥
             SecretKey sk = new SecretKey();
@@ -166,60 +311,120 @@ public class WFIBESystem implements Serializable {
     }
 
     /**
-     * 生成正交矩阵
+     * Σ_j B[j]·y_j（y_dim = 1），只遍历非零坐标，小整数权重用倍加完成
+     * 在limb形式上累加，只在最后转换一次为Zp元素
      */
-    private Element[][] generateOrthogonalMatrix(int rows, int cols) {
-        Element[][] matrix = new Element[rows][cols];
-        SecureRandom random = new SecureRandom();
+    private Element innerProduct(long[] row, SparseVector y, int dim) {
+        long[] k = zr.newVector(2);
+        innerProduct(zr, row, y, dim, k);
+        return Zp.newElement(zr.get(k, 0));
+    }
 
-        // 初始化随机矩阵
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                matrix[i][j] = Zp.newRandomElement();
+    /**
+     * innerProduct的limb部分，结果写入k的下标0；k至少2个元素，下标1为加权项的临时位
+     */
+    static void innerProduct(ZrMontgomery zr, long[] row, SparseVector y, int dim, long[] k) {
+        zr.copy(k, 0, row, dim);
+
+        for (int t = 0; t < y.size(); t++) {
+            int index = y.getIndex(t);
+            int weight = y.getWeight(t);
+            int w = Math.abs(weight);
+
+            long[] term = row;
+            int termIndex = index;
+            if (w != 1) {
+                zr.copy(k, 1, row, index);
+                for (int bit = 30 - Integer.numberOfLeadingZeros(w); bit >= 0; bit--) {
+                    zr.add(k, 1, k, 1, k, 1);
+                    if (((w >>> bit) & 1) != 0) {
+                        zr.add(k, 1, k, 1, row, index);
+                    }
+                }
+                term = k;
+                termIndex = 1;
             }
-        }
 
-        // Gram-Schmidt正交化
-        for (int i = 0; i < rows; i++) {
-            for (int k = 0; k < i; k++) {
-                Element dotProduct = Zp.newZeroElement();
-                Element norm = Zp.newZeroElement();
-
-                // 计算内积和范数
-                for (int j = 0; j < cols; j++) {
-                    dotProduct.add(matrix[i][j].duplicate().mul(matrix[k][j]));
-                    norm.add(matrix[k][j].duplicate().mul(matrix[k][j]));
-                }
+            if (weight < 0) {
+                zr.sub(k, 0, k, 0, term, termIndex);
+            } else {
+                zr.add(k, 0, k, 0, term, termIndex);
+            }
+        }
+    }
 
-                // 投影系数
-                Element factor = dotProduct.div(norm);
+    /**
+     * g2^{Σ_j B[i][j]·y_j} = Π_{y_j≠0} (g2^{B[i][j]})^{y_j} · g2^{B[i][dim]}（y_dim = 1）
+     */
+    private Element combineKeyTable(Element[] row, SparseVector y, int dim) {
+        Element result = row[dim].duplicate();
+        Element scratch = G2.newElement();
+
+        for (int t = 0; t < y.size(); t++) {
+            Element base = row[y.getIndex(t)];
+            int weight = y.getWeight(t);
+            result.mul(weight == 1 ? base : smallPow(scratch, base, weight));
+        }
+        return result.getImmutable();
+    }
 
-                // 减去投影
-                for (int j = 0; j < cols; j++) {
-                    matrix[i][j].sub(matrix[k][j].duplicate().mul(factor));
-                }
+    /**
+     * 小整数指数幂：从高位到低位的平方-乘加法链，结果写入scratch，权重1~3只需0~2次群运算
+     */
+    private Element smallPow(Element scratch, Element base, int exponent) {
+        int e = Math.abs(exponent);
+        scratch.set(base);
+        for (int bit = 30 - Integer.numberOfLeadingZeros(e); bit >= 0; bit--) {
+            scratch.square();
+            if (((e >>> bit) & 1) != 0) {
+                scratch.mul(base);
             }
+        }
 
-            // 归一化
-            Element norm = Zp.newZeroElement();
-            for (int j = 0; j < cols; j++) {
-                norm.add(matrix[i][j].duplicate().mul(matrix[i][j]));
-            }
+        return exponent < 0 ? scratch.invert() : scratch;
+    }
+
+    /**
+     * 生成随机矩阵（limb形式），随后由ZpLinearAlgebra正交化
+     */
+    private long[][] randomMatrix(int rows, int cols, ForkJoinPool pool) {
+        long[][] matrix = new long[rows][];
+        for (int i = 0; i < rows; i++) {
+            matrix[i] = zr.newVector(cols);
+        }
+        forEachIndex(pool, rows * cols, t ->
+                zr.set(matrix[t / cols], t % cols, Zp.newRandomElement().toBigInteger()));
+        return matrix;
+    }
 
-            // 简化处理：不做开方，保持在Zp域内
+    private Element[][] toElements(long[][] matrix) {
+        Element[][] elements = new Element[matrix.length][];
+        for (int i = 0; i < matrix.length; i++) {
+            int cols = matrix[i].length / ZrMontgomery.LIMBS;
+            elements[i] = new Element[cols];
             for (int j = 0; j < cols; j++) {
-                matrix[i][j] = matrix[i][j].getImmutable();
+                elements[i][j] = Zp.newElement(zr.get(matrix[i], j)).getImmutable();
             }
         }
+        return elements;
+    }
 
+    private long[][] toLimbs(Element[][] elements) {
+        long[][] matrix = new long[elements.length][];
+        for (int i = 0; i < elements.length; i++) {
+            matrix[i] = zr.newVector(elements[i].length);
+            for (int j = 0; j < elements[i].length; j++) {
+                zr.set(matrix[i], j, elements[i][j].toBigInteger());
+            }
+        }
         return matrix;
     }
 
     /**
-     * 编码属性集为向量
+     * 编码属性集为稀疏向量
      */
-    public int[] encodeAttributes(Set<String> attributes, int dimension) {
-        int[] vector = new int[dimension];
+    public SparseVector encodeAttributes(Set<String> attributes, int dimension) {
+        SortedMap<Integer, Integer> entries = new TreeMap<>();
 
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
@@ -227,20 +432,20 @@ public class WFIBESystem implements Serializable {
             for (String attr : attributes) {
                 byte[] hash = md.digest(attr.getBytes("UTF-8"));
                 int index = Math.abs(bytesToInt(hash)) % dimension;
-                vector[index] = 1;
+                entries.put(index, 1);
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
 
-        return vector;
+        return SparseVector.fromMap(dimension, entries);
     }
 
     /**
-     * 编码策略为向量
+     * 编码策略为稀疏向量
      */
-    public int[] encodePolicy(Map<String, Integer> policy, int dimension) {
-        int[] vector = new int[dimension];
+    public SparseVector encodePolicy(Map<String, Integer> policy, int dimension) {
+        SortedMap<Integer, Integer> entries = new TreeMap<>();
 
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
@@ -248,13 +453,13 @@ public class WFIBESystem implements Serializable {
             for (Map.Entry<String, Integer> entry : policy.entrySet()) {
                 byte[] hash = md.digest(entry.getKey().getBytes("UTF-8"));
                 int index = Math.abs(bytesToInt(hash)) % dimension;
-                vector[index] = entry.getValue();
+                entries.put(index, entry.getValue());
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
 
-        return vector;
+        return SparseVector.fromMap(dimension, entries);
     }
 
     private int bytesToInt(byte[] bytes) {
@@ -303,6 +508,23 @@ public class WFIBESystem implements Serializable {
         return 2 * (n + 1 + m + 1) * Zp.getLengthInBytes();
     }
 
+    private long calculateFixedBaseTableSize() {
+        if (g1_pp == null) {
+            return 0;
+        }
+        int bits = Zp.getOrder().bitLength();
+        long entries = (long) (bits / fixedBaseWindow + 1) << fixedBaseWindow;
+        return entries * (G1.getLengthInBytes() + G2.getLengthInBytes());
+    }
+
+    private long calculateKeyTableSize() {
+        return keyTable1 == null ? 0 : 2L * (n + 1 + m + 1) * G2.getLengthInBytes();
+    }
+
+    public Pairing getPairing() {
+        return pairing;
+    }
+
     public int getVectorDim_n() {
         return n;
     }
@@ -311,12 +533,155 @@ public class WFIBESystem implements Serializable {
         return m;
     }
 
+    /**
+     * 固定基表窗口位数；setup之前为将使用的配置，之后为实际生效的配置
+     */
+    public int getFixedBaseWindow() {
+        return fixedBaseWindow;
+    }
+
+    public boolean isKeyTablesEnabled() {
+        return keyTablesEnabled;
+    }
+
+    String getPairingParams() {
+        return pairingParams;
+    }
+
+    // ==================== 主状态快照 ====================
+
+    /**
+     * 写出完整主状态（供MasterStateSnapshot使用）
+     * 布局：配对参数 | n | m | 窗口位数 | 幂表标志 | g1 | g2 | Z | B1 | B2 | mpk1 | mpk2 |
+     *       [密钥生成幂表] | [g1/g2固定基表]
+     * 群元素和Zp元素都是定长，按域长度直接拼接，不带长度前缀
+     */
+    void writeMasterState(DataOutputStream out) throws IOException {
+        byte[] params = pairingParams.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(params.length);
+        out.write(params);
+        out.writeInt(n);
+        out.writeInt(m);
+        out.writeInt(g1_pp != null ? fixedBaseWindow : 0);
+        out.writeBoolean(keyTable1 != null);
+
+        out.write(g1.toBytes());
+        out.write(g2.toBytes());
+        out.write(Z.toBytes());
+        writeElements(out, B1);
+        writeElements(out, B2);
+        writeElements(out, mpk1_h);
+        writeElements(out, mpk2_h);
+
+        if (keyTable1 != null) {
+            writeElements(out, keyTable1);
+            writeElements(out, keyTable2);
+        }
+
+        if (g1_pp != null) {
+            for (ElementPowPreProcessing table : new ElementPowPreProcessing[]{g1_pp, g2_pp}) {
+                byte[] bytes = table.toBytes();
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * 从writeMasterState的输出恢复系统
+     * buffer须为堆缓冲区：群元素和固定基表直接从底层数组按偏移解析，不逐个拷贝
+     */
+    static WFIBESystem readMasterState(ByteBuffer in) {
+        WFIBESystem system = new WFIBESystem();
+
+        byte[] params = new byte[in.getInt()];
+        in.get(params);
+        system.pairingParams = new String(params, StandardCharsets.UTF_8);
+        system.n = in.getInt();
+        system.m = in.getInt();
+        int window = in.getInt();
+        boolean keyTables = in.get() != 0;
+
+        system.pairing = PairingFactory.getPairing(system.pairingParams);
+        system.G1 = system.pairing.getG1();
+        system.G2 = system.pairing.getG2();
+        system.GT = system.pairing.getGT();
+        system.Zp = system.pairing.getZr();
+
+        system.g1 = readElement(in, system.G1);
+        system.g2 = readElement(in, system.G2);
+        system.Z = readElement(in, system.Zp);
+        system.B1 = readElements(in, system.Zp, system.n);
+        system.B2 = readElements(in, system.Zp, system.m);
+        system.zr = new ZrMontgomery(system.Zp.getOrder());
+        system.B1_limbs = system.toLimbs(system.B1);
+        system.B2_limbs = system.toLimbs(system.B2);
+        system.mpk1_h = readElements(in, system.G1, system.n);
+        system.mpk2_h = readElements(in, system.G1, system.m);
+
+        system.keyTablesEnabled = keyTables;
+        if (keyTables) {
+            system.keyTable1 = readElements(in, system.G2, system.n);
+            system.keyTable2 = readElements(in, system.G2, system.m);
+        }
+
+        system.fixedBaseWindow = window;
+        if (window > 0) {
+            system.g1_pp = readPowTable(in, system.G1, window);
+            system.g2_pp = readPowTable(in, system.G2, window);
+        }
+
+        return system;
+    }
+
+    private static void writeElements(DataOutputStream out, Element[][] elements) throws IOException {
+        for (Element[] row : elements) {
+            for (Element element : row) {
+                out.write(element.toBytes());
+            }
+        }
+    }
+
+    private static Element readElement(ByteBuffer in, Field field) {
+        int length = field.getLengthInBytes();
+        Element element = field.newElementFromBytes(in.array(), in.arrayOffset() + in.position());
+        in.position(in.position() + length);
+        return element.getImmutable();
+    }
+
+    private static Element[][] readElements(ByteBuffer in, Field field, int dim) {
+        Element[][] elements = new Element[2][dim + 1];
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j <= dim; j++) {
+                elements[i][j] = readElement(in, field);
+            }
+        }
+        return elements;
+    }
+
+    private static ElementPowPreProcessing readPowTable(ByteBuffer in, Field field, int window) {
+        int length = in.getInt();
+        ElementPowPreProcessing table = new AbstractElementPowPreProcessing(
+                field, window, in.array(), in.arrayOffset() + in.position());
+        in.position(in.position() + length);
+        return table;
+    }
+
     // ==================== 数据结构定义 ====================
 
     public static class SystemSetupResult implements Serializable {
         public long setupTime;
+        public int setupThreads;
+        // 各阶段耗时（ms）
+        public long generatorTime;   // 生成元与固定基表
+        public long matrixTime;      // 正交矩阵B1/B2
+        public long mpkTime;         // 主公钥
+        public long keyTableTime;    // 密钥生成幂表
         public int publicKeySize;
         public int masterKeySize;
+        public long keyTableSize;
+        public int fixedBaseWindow;
+        public long fixedBaseTableSize;
         public boolean success;
         public String errorMessage;
     }
@@ -327,6 +692,7 @@ public class WFIBESystem implements Serializable {
         public int keySize;
         public boolean success;
         public String errorMessage;
+        public long retryAfterMs;  // 被KGC准入控制拒绝时建议的重试等待（毫秒）
     }
 
     public static class SecretKey implements Serializable {
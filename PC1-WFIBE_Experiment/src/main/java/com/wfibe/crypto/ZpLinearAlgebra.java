@@ -0,0 +1,125 @@
+package com.wfibe.crypto;
+
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Zp上的线性代数运算（用于主密钥矩阵生成）
+ * 行向量以ZrMontgomery的limb形式存放，逐元素运算不分配对象；
+ * 每一层的行范数只算一次，多个矩阵的范数用Montgomery批量求逆合并为一次模逆
+ */
+final class ZpLinearAlgebra {
+
+    // 列数超过该值时列循环分块并行
+    private static final int PARALLEL_CHUNK = 256;
+
+    private final ZrMontgomery zr;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param pool 为null时串行计算
+     */
+    ZpLinearAlgebra(ZrMontgomery zr, ForkJoinPool pool) {
+        this.zr = zr;
+        this.pool = pool;
+    }
+
+    /**
+     * 对若干矩阵的行原地做Gram-Schmidt正交化（修正形式，与经典形式在精确算术下结果相同）
+     * 第k层：各矩阵第k行已定型，批量求出其范数的逆，再从后续各行中减去在第k行上的投影
+     */
+    void orthogonalize(long[][]... matrices) {
+        int maxRows = 0;
+        for (long[][] matrix : matrices) {
+            maxRows = Math.max(maxRows, matrix.length);
+        }
+
+        long[] factor = zr.newVector(1);
+        for (int k = 0; k < maxRows - 1; k++) {
+            // 还有后续行需要投影的矩阵
+            int count = 0;
+            long[][][] active = new long[matrices.length][][];
+            for (long[][] matrix : matrices) {
+                if (matrix.length > k + 1) {
+                    active[count++] = matrix;
+                }
+            }
+
+            long[] inverses = zr.newVector(count);
+            for (int t = 0; t < count; t++) {
+                dot(active[t][k], active[t][k], inverses, t);
+            }
+            zr.batchInvert(inverses, count);
+
+            for (int t = 0; t < count; t++) {
+                long[][] matrix = active[t];
+                for (int i = k + 1; i < matrix.length; i++) {
+                    dot(matrix[i], matrix[k], factor, 0);
+                    zr.mul(factor, 0, factor, 0, inverses, t);
+                    subtractMultiple(matrix[i], matrix[k], factor);
+                }
+            }
+        }
+    }
+
+    /**
+     * dst[d] = <a, b>
+     */
+    void dot(long[] a, long[] b, long[] dst, int d) {
+        int length = a.length / ZrMontgomery.LIMBS;
+        int chunks = chunkCount(length);
+        if (chunks == 1) {
+            zr.dot(a, b, 0, length, dst, d);
+            return;
+        }
+
+        long[] partial = zr.newVector(chunks);
+        forEachChunk(chunks, c -> {
+            int from = c * PARALLEL_CHUNK;
+            zr.dot(a, b, from, Math.min(length, from + PARALLEL_CHUNK), partial, c);
+        });
+
+        for (int c = 1; c < chunks; c++) {
+            zr.add(partial, 0, partial, 0, partial, c);
+        }
+        zr.copy(dst, d, partial, 0);
+    }
+
+    /**
+     * target -= factor[0] * source，原地更新
+     */
+    void subtractMultiple(long[] target, long[] source, long[] factor) {
+        int length = target.length / ZrMontgomery.LIMBS;
+        int chunks = chunkCount(length);
+        forEachChunk(chunks, c -> {
+            int from = c * PARALLEL_CHUNK;
+            int to = chunks == 1 ? length : Math.min(length, from + PARALLEL_CHUNK);
+            long[] term = zr.newVector(1);
+            for (int j = from; j < to; j++) {
+                zr.mul(term, 0, source, j, factor, 0);
+                zr.sub(target, j, target, j, term, 0);
+            }
+        });
+    }
+
+    private int chunkCount(int length) {
+        return pool == null ? 1 : Math.max(1, (length + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK);
+    }
+
+    private void forEachChunk(int chunks, IntConsumer body) {
+        if (chunks == 1) {
+            body.accept(0);
+            return;
+        }
+
+        try {
+            pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(body)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Parallel Gram-Schmidt interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Parallel Gram-Schmidt failed", e.getCause());
+        }
+    }
+}
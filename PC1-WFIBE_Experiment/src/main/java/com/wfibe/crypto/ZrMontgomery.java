@@ -0,0 +1,314 @@
+package com.wfibe.crypto;
+
+import java.math.BigInteger;
+
+/**
+ * Zr上的定长Montgomery算术（3个64位limb，模数不超过190位）
+ * 元素以Montgomery形式 aR mod p（R = 2^192）存放在long数组中，第i个元素占 [3i, 3i+3)，低位在前；
+ * 乘、加、减只使用局部变量，不分配对象。与BigInteger之间的转换只在矩阵生成和结果输出时发生
+ */
+public final class ZrMontgomery {
+
+    public static final int LIMBS = 3;
+    private static final int MAX_BITS = 190;
+
+    private final BigInteger modulus;
+    private final long p0, p1, p2;
+    private final long nInv;  // -p^{-1} mod 2^64
+
+    public ZrMontgomery(BigInteger modulus) {
+        if (!supports(modulus)) {
+            throw new IllegalArgumentException("Zr modulus must be odd and at most " +
+                    MAX_BITS + " bits, got " + modulus.bitLength() + " bits");
+        }
+        this.modulus = modulus;
+        this.p0 = modulus.longValue();
+        this.p1 = modulus.shiftRight(64).longValue();
+        this.p2 = modulus.shiftRight(128).longValue();
+
+        // 牛顿迭代求 p0^{-1} mod 2^64，每轮有效位数翻倍
+        long inv = p0;
+        for (int i = 0; i < 5; i++) {
+            inv *= 2 - p0 * inv;
+        }
+        this.nInv = -inv;
+    }
+
+    /**
+     * 模数是否可用本引擎表示（奇数且不超过190位，留出加法进位余量）
+     */
+    public static boolean supports(BigInteger modulus) {
+        return modulus.signum() > 0 && modulus.testBit(0) && modulus.bitLength() <= MAX_BITS;
+    }
+
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    /**
+     * 分配可容纳length个元素的向量，初始值为0
+     */
+    public long[] newVector(int length) {
+        return new long[length * LIMBS];
+    }
+
+    /**
+     * dst[d] = v mod p（转换为Montgomery形式）
+     */
+    public void set(long[] dst, int d, BigInteger v) {
+        BigInteger mont = v.mod(modulus).shiftLeft(64 * LIMBS).mod(modulus);
+        int o = d * LIMBS;
+        dst[o] = mont.longValue();
+        dst[o + 1] = mont.shiftRight(64).longValue();
+        dst[o + 2] = mont.shiftRight(128).longValue();
+    }
+
+    /**
+     * 取出src[s]的普通表示
+     */
+    public BigInteger get(long[] src, int s) {
+        // 乘以1即完成一次Montgomery约简：aR * 1 / R = a
+        long[] plain = new long[LIMBS];
+        montMul(src[s * LIMBS], src[s * LIMBS + 1], src[s * LIMBS + 2], 1, 0, 0, plain, 0);
+
+        byte[] bytes = new byte[8 * LIMBS + 1];
+        for (int i = 0; i < LIMBS; i++) {
+            long limb = plain[LIMBS - 1 - i];
+            for (int b = 0; b < 8; b++) {
+                bytes[1 + 8 * i + b] = (byte) (limb >>> (56 - 8 * b));
+            }
+        }
+        return new BigInteger(bytes);
+    }
+
+    public void copy(long[] dst, int d, long[] src, int s) {
+        System.arraycopy(src, s * LIMBS, dst, d * LIMBS, LIMBS);
+    }
+
+    public boolean isZero(long[] a, int i) {
+        int o = i * LIMBS;
+        return (a[o] | a[o + 1] | a[o + 2]) == 0;
+    }
+
+    /**
+     * dst[d] = a[i] + b[j] mod p，允许dst与a、b为同一位置
+     */
+    public void add(long[] dst, int d, long[] a, int i, long[] b, int j) {
+        int ao = i * LIMBS, bo = j * LIMBS;
+        long x0 = a[ao], x1 = a[ao + 1], x2 = a[ao + 2];
+        long y0 = b[bo], y1 = b[bo + 1], y2 = b[bo + 2];
+
+        // 两数都小于2^190，和不会溢出第三个limb
+        long s0 = x0 + y0;
+        long c = carry(s0, y0);
+        long s1 = x1 + y1;
+        long c1 = carry(s1, y1);
+        s1 += c;
+        c1 |= carry(s1, c);
+        long s2 = x2 + y2 + c1;
+
+        reduceOnce(s0, s1, s2, dst, d * LIMBS);
+    }
+
+    /**
+     * dst[d] = a[i] - b[j] mod p，允许dst与a、b为同一位置
+     */
+    public void sub(long[] dst, int d, long[] a, int i, long[] b, int j) {
+        int ao = i * LIMBS, bo = j * LIMBS;
+        long x0 = a[ao], x1 = a[ao + 1], x2 = a[ao + 2];
+        long y0 = b[bo], y1 = b[bo + 1], y2 = b[bo + 2];
+
+        long d0 = x0 - y0;
+        long w = borrow(x0, y0);
+        long d1 = x1 - y1;
+        long w1 = borrow(x1, y1) | borrow(d1, w);
+        d1 -= w;
+        long d2 = x2 - y2;
+        long w2 = borrow(x2, y2) | borrow(d2, w1);
+        d2 -= w1;
+
+        if (w2 != 0) {
+            // 结果为负，加回p
+            d0 += p0;
+            long c = carry(d0, p0);
+            d1 += p1;
+            long c1 = carry(d1, p1);
+            d1 += c;
+            c1 |= carry(d1, c);
+            d2 += p2 + c1;
+        }
+
+        int o = d * LIMBS;
+        dst[o] = d0;
+        dst[o + 1] = d1;
+        dst[o + 2] = d2;
+    }
+
+    /**
+     * dst[d] = a[i] * b[j] mod p（Montgomery乘法），允许dst与a、b为同一位置
+     */
+    public void mul(long[] dst, int d, long[] a, int i, long[] b, int j) {
+        int ao = i * LIMBS, bo = j * LIMBS;
+        montMul(a[ao], a[ao + 1], a[ao + 2], b[bo], b[bo + 1], b[bo + 2], dst, d * LIMBS);
+    }
+
+    /**
+     * dst[d] = Σ_{k∈[from,to)} a[k]·b[k] mod p
+     */
+    public void dot(long[] a, long[] b, int from, int to, long[] dst, int d) {
+        long[] term = new long[LIMBS];
+        long[] acc = new long[LIMBS];
+        for (int k = from; k < to; k++) {
+            mul(term, 0, a, k, b, k);
+            add(acc, 0, acc, 0, term, 0);
+        }
+        copy(dst, d, acc, 0);
+    }
+
+    /**
+     * dst[d] = a[i]^{-1} mod p，a[i]为0时抛出ArithmeticException
+     */
+    public void invert(long[] dst, int d, long[] a, int i) {
+        if (isZero(a, i)) {
+            throw new ArithmeticException("Inverse of zero in Zr");
+        }
+        set(dst, d, get(a, i).modInverse(modulus));
+    }
+
+    /**
+     * Montgomery批量求逆：原地求出values中前count个元素的逆，共3(count-1)次乘法加一次求逆
+     */
+    public void batchInvert(long[] values, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        // prefix[k] = values[0] * ... * values[k-1]
+        long[] prefix = newVector(count + 1);
+        set(prefix, 0, BigInteger.ONE);
+        for (int k = 0; k < count; k++) {
+            mul(prefix, k + 1, prefix, k, values, k);
+        }
+
+        long[] inverse = newVector(2);
+        invert(inverse, 0, prefix, count);
+        for (int k = count - 1; k >= 0; k--) {
+            // inverse = (values[0..k])^{-1}
+            mul(inverse, 1, inverse, 0, prefix, k);
+            mul(inverse, 0, inverse, 0, values, k);
+            copy(values, k, inverse, 1);
+        }
+    }
+
+    /**
+     * CIOS形式的Montgomery乘法：(x * y / R) mod p，结果写入dst[o..o+3)
+     */
+    private void montMul(long x0, long x1, long x2, long y0, long y1, long y2,
+                         long[] dst, int o) {
+        long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+
+        for (int i = 0; i < LIMBS; i++) {
+            long yi = i == 0 ? y0 : i == 1 ? y1 : y2;
+
+            // t += x * yi
+            long lo = x0 * yi, hi = mulHigh(x0, yi);
+            t0 += lo;
+            long c = hi + carry(t0, lo);
+
+            lo = x1 * yi;
+            hi = mulHigh(x1, yi);
+            t1 += lo;
+            hi += carry(t1, lo);
+            t1 += c;
+            c = hi + carry(t1, c);
+
+            lo = x2 * yi;
+            hi = mulHigh(x2, yi);
+            t2 += lo;
+            hi += carry(t2, lo);
+            t2 += c;
+            c = hi + carry(t2, c);
+
+            t3 += c;
+            long t4 = carry(t3, c);
+
+            // t = (t + q * p) / 2^64，q使最低limb归零
+            long q = t0 * nInv;
+
+            lo = q * p0;
+            hi = mulHigh(q, p0);
+            t0 += lo;
+            c = hi + carry(t0, lo);
+
+            lo = q * p1;
+            hi = mulHigh(q, p1);
+            t1 += lo;
+            hi += carry(t1, lo);
+            t1 += c;
+            c = hi + carry(t1, c);
+
+            lo = q * p2;
+            hi = mulHigh(q, p2);
+            t2 += lo;
+            hi += carry(t2, lo);
+            t2 += c;
+            c = hi + carry(t2, c);
+
+            t3 += c;
+            t4 += carry(t3, c);
+
+            t0 = t1;
+            t1 = t2;
+            t2 = t3;
+            t3 = t4;
+        }
+
+        // 结果小于2p < 2^191，t3恒为0
+        reduceOnce(t0, t1, t2, dst, o);
+    }
+
+    /**
+     * 输入小于2p，输出 s mod p
+     */
+    private void reduceOnce(long s0, long s1, long s2, long[] dst, int o) {
+        long d0 = s0 - p0;
+        long w = borrow(s0, p0);
+        long d1 = s1 - p1;
+        long w1 = borrow(s1, p1) | borrow(d1, w);
+        d1 -= w;
+        long d2 = s2 - p2;
+        long w2 = borrow(s2, p2) | borrow(d2, w1);
+        d2 -= w1;
+
+        if (w2 != 0) {
+            dst[o] = s0;
+            dst[o + 1] = s1;
+            dst[o + 2] = s2;
+        } else {
+            dst[o] = d0;
+            dst[o + 1] = d1;
+            dst[o + 2] = d2;
+        }
+    }
+
+    /**
+     * 无符号64位乘法的高64位
+     */
+    private static long mulHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    /**
+     * sum = x + addend 后是否产生进位
+     */
+    private static long carry(long sum, long addend) {
+        return Long.compareUnsigned(sum, addend) < 0 ? 1 : 0;
+    }
+
+    /**
+     * x - y 是否产生借位
+     */
+    private static long borrow(long x, long y) {
+        return Long.compareUnsigned(x, y) < 0 ? 1 : 0;
+    }
+}
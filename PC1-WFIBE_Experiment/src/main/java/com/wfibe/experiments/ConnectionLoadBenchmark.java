@@ -0,0 +1,168 @@
+package com.wfibe.experiments;
+
+import com.wfibe.crypto.*;
+import com.wfibe.network.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * KGC连接负载基准测试 - 在PC1上运行
+ * 在本机分别以固定线程池模式和虚拟线程模式启动KGC，同时打开大量连接：
+ * 一部分为空闲连接（建立后保持一段时间不发请求），其余立即请求密钥，
+ * 比较正常请求的延迟分位数和总耗时，观察空闲连接是否占满连接线程
+ *
+ * 用法: ConnectionLoadBenchmark [connections] [idlePercent] [idleHoldMs]
+ */
+public class ConnectionLoadBenchmark {
+
+    private static final int DIMENSION = 64;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int idlePercent = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int idleHoldMs = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        System.out.println("\n=== KGC Connection Load Benchmark ===");
+        System.out.println("Concurrent connections: " + connections);
+        System.out.println("Idle connections: " + idlePercent + "% (held for " + idleHoldMs + " ms)");
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.println();
+
+        System.out.println("Connection mode                   | Completed | Failed | p50 (ms) | p99 (ms) | Max (ms) | Wall (ms)");
+        run(false, connections, idlePercent, idleHoldMs);
+        run(true, connections, idlePercent, idleHoldMs);
+    }
+
+    private static void run(boolean virtualThreads, int connections,
+                            int idlePercent, int idleHoldMs) throws Exception {
+        int port = freePort();
+        KGCServer server = new KGCServer(port);
+        server.setSnapshotEnabled(false);
+        server.setKeyCacheEnabled(false);
+        server.setVirtualThreadsEnabled(virtualThreads);
+        server.setBinaryPort(0);
+        // 所有请求都来自本机同一地址，关闭按地址限速
+        server.setAdmissionControl(SystemParameters.AdmissionConfig.MAX_QUEUED_KEYGENS, 0,
+                SystemParameters.AdmissionConfig.CLIENT_BURST, SystemParameters.AdmissionConfig.QUEUE_SLO_MILLIS);
+
+        // 服务器逐请求打印日志，测量期间屏蔽输出
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start(DIMENSION, DIMENSION);
+            } catch (Exception e) {
+                stderr.println("Server failed: " + e.getMessage());
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        List<Long> latencies = new ArrayList<>();
+        int failed = 0;
+        long wallStart = 0;
+        try {
+            awaitListening(port);
+
+            ExecutorService clients = Executors.newFixedThreadPool(connections);
+            List<Future<Long>> results = new ArrayList<>(connections);
+            CountDownLatch go = new CountDownLatch(1);
+
+            wallStart = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                boolean holdIdle = i % 100 < idlePercent;
+                int clientIndex = i;
+                results.add(clients.submit(() -> {
+                    go.await();
+                    return holdIdle ? holdIdleConnection(port, idleHoldMs) :
+                            requestKey(port, clientIndex);
+                }));
+            }
+            go.countDown();
+
+            for (Future<Long> result : results) {
+                try {
+                    long latency = result.get();
+                    if (latency >= 0) {
+                        latencies.add(latency);
+                    }
+                } catch (ExecutionException e) {
+                    failed++;
+                }
+            }
+            clients.shutdown();
+
+        } finally {
+            server.shutdown();
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+
+        long wall = (System.nanoTime() - wallStart) / 1_000_000;
+        Collections.sort(latencies);
+        System.out.printf("%-33s | %9d | %6d | %8d | %8d | %8d | %9d\n",
+                server.getConnectionMode(), latencies.size(), failed,
+                percentile(latencies, 50), percentile(latencies, 99),
+                latencies.isEmpty() ? 0 : latencies.get(latencies.size() - 1), wall);
+    }
+
+    /**
+     * 请求一个密钥，返回从发起连接到收到响应的毫秒数
+     */
+    private static long requestKey(int port, int clientIndex) throws IOException {
+        KGCClient client = new KGCClient("127.0.0.1", port, "load-" + clientIndex);
+        Set<String> attributes = new HashSet<>(Arrays.asList("device:" + clientIndex, "role:sensor"));
+        Map<String, Integer> policy = new HashMap<>();
+        policy.put("zone:" + (clientIndex % 16), 1);
+
+        long start = System.nanoTime();
+        WFIBESystem.KeyGenResult result = client.requestKey(null, attributes, policy);
+        if (!result.success) {
+            throw new IOException("Key request failed: " + result.errorMessage);
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * 建立连接后不发送任何数据，保持holdMs后关闭，模拟慢速或空闲客户端
+     */
+    private static long holdIdleConnection(int port, int holdMs) throws Exception {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("127.0.0.1", port),
+                    SystemParameters.NetworkConfig.CONNECTION_TIMEOUT);
+            Thread.sleep(holdMs);
+        }
+        return -1;
+    }
+
+    private static long percentile(List<Long> sorted, int p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitListening(int port) throws InterruptedException {
+        while (true) {
+            try (Socket socket = new Socket("127.0.0.1", port)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+    }
+}
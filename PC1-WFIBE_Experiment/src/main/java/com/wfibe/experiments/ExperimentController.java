@@ -1,6 +1,7 @@
 package com.wfibe.experiments;
 
 import com.wfibe.crypto.*;
+import com.wfibe.network.KGCAdminClient;
 import java.io.*;
 import java.net.*;
 import java.util.*;
@@ -14,6 +15,11 @@ public class ExperimentController {
     private static final String PC2_IP = SystemParameters.NetworkConfig.SENDER_IP;
     private static final String PC3_IP = SystemParameters.NetworkConfig.RECEIVER_IP;
 
+    // 管理端口只接受本机连接，控制器与KGC同在PC1上运行
+    private final KGCAdminClient kgcAdmin = new KGCAdminClient(
+            InetAddress.getLoopbackAddress().getHostAddress(), SystemParameters.NetworkConfig.KGC_ADMIN_PORT);
+    private String currentInstance;  // 当前实验使用的KGC实例
+
     public static void main(String[] args) {
         System.out.println("\n=== WFIBE Experiment Controller ===");
         System.out.println("This controller coordinates experiments across all devices");
@@ -64,11 +70,11 @@ public class ExperimentController {
         for (int dim : dimensions) {
             System.out.println("\nTesting dimension: " + dim);
 
-            // 重启KGC服务器with新维度
-            restartKGCServer(dim, dim);
+            // 切换到该维度的KGC实例
+            String instance = switchKGCInstance(dim, dim);
 
             // 触发测试
-            triggerTest(dim, 50, 100); // 50个属性，100KB消息
+            triggerTest(instance, dim, 50, 100); // 50个属性，100KB消息
 
             // 等待测试完成
             waitForCompletion(30000); // 30秒
@@ -85,14 +91,14 @@ public class ExperimentController {
         int fixedDimension = 256;
         int[] attributeCounts = SystemParameters.ExperimentConfig.ATTRIBUTE_COUNTS;
 
-        // 启动KGC服务器
-        restartKGCServer(fixedDimension, fixedDimension);
+        // 切换KGC实例
+        String instance = switchKGCInstance(fixedDimension, fixedDimension);
 
         for (int attrCount : attributeCounts) {
             System.out.println("\nTesting with " + attrCount + " attributes");
 
             // 触发测试
-            triggerTest(fixedDimension, attrCount, 100);
+            triggerTest(instance, fixedDimension, attrCount, 100);
 
             // 记录结果
             recordScalabilityResult(fixedDimension, attrCount);
@@ -112,7 +118,7 @@ public class ExperimentController {
         int[] messageSizes = {1, 10, 100, 1000}; // KB
         int[] attributeCounts = {10, 50, 100, 200};
 
-        restartKGCServer(dimension, dimension);
+        switchKGCInstance(dimension, dimension);
 
         List<Integer> ciphertextSizes = new ArrayList<>();
 
@@ -175,57 +181,69 @@ public class ExperimentController {
 
     // ========== 辅助方法 ==========
 
-    private void restartKGCServer(int n, int m) {
-        try {
-            // 停止现有服务器
-            sendCommand("STOP", SystemParameters.NetworkConfig.KGC_IP,
-                    SystemParameters.NetworkConfig.KGC_PORT);
-            Thread.sleep(2000);
+    /**
+     * 切换KGC上的活动实例：按维度命名，不存在时创建，随后退役上一个实例
+     * 所有维度共用一个已预热的KGC进程，不再重启JVM
+     *
+     * @return 该维度的实例id，切换失败时返回null
+     */
+    private String switchKGCInstance(int n, int m) {
+        String instanceId = "dim-" + n + "x" + m;
+        if (instanceId.equals(currentInstance)) {
+            return instanceId;
+        }
 
-            // 启动新服务器
-            ProcessBuilder pb = new ProcessBuilder(
-                    "java", "-cp", "target/classes",
-                    "com.wfibe.experiments.KGCServerMain",
-                    String.valueOf(n), String.valueOf(m));
-            pb.start();
+        try {
+            if (!kgcAdmin.listInstances().containsKey(instanceId)) {
+                long start = System.currentTimeMillis();
+                kgcAdmin.createInstance(instanceId, n, m);
+                System.out.println("  KGC instance " + instanceId + " created in " +
+                        (System.currentTimeMillis() - start) + " ms");
+            }
 
-            Thread.sleep(5000); // 等待启动
+            if (currentInstance != null) {
+                kgcAdmin.retireInstance(currentInstance);
+            }
+            currentInstance = instanceId;
+            return instanceId;
 
-        } catch (Exception e) {
-            System.err.println("Failed to restart KGC: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Failed to switch KGC instance: " + e.getMessage());
+            return null;
         }
     }
 
-    private void triggerTest(int dim, int attrs, int msgSize) {
+    /**
+     * 通知PC2和PC3按instance的参数执行测试；实例切换失败时跳过，避免用错维度的参数测试
+     */
+    private void triggerTest(String instance, int dim, int attrs, int msgSize) {
+        if (instance == null) {
+            System.err.println("Skipping test: no KGC instance for dimension " + dim);
+            return;
+        }
         try {
             // 发送测试命令到PC2和PC3
-            sendTestCommand(PC2_IP, 8081, "ENCRYPT", dim, attrs, msgSize);
-            sendTestCommand(PC3_IP, 8082, "DECRYPT", dim, attrs, msgSize);
+            sendTestCommand(PC2_IP, 8081, "ENCRYPT", instance, dim, attrs, msgSize);
+            sendTestCommand(PC3_IP, 8082, "DECRYPT", instance, dim, attrs, msgSize);
 
         } catch (Exception e) {
             System.err.println("Failed to trigger test: " + e.getMessage());
         }
     }
 
-    private void sendTestCommand(String ip, int port, String command,
+    /**
+     * 命令格式：命令,维度,属性数,消息大小(KB),KGC实例id
+     */
+    private void sendTestCommand(String ip, int port, String command, String instance,
                                  int dim, int attrs, int msgSize) {
         try (Socket socket = new Socket(ip, port)) {
             PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-            out.printf("%s,%d,%d,%d\n", command, dim, attrs, msgSize);
+            out.printf("%s,%d,%d,%d,%s\n", command, dim, attrs, msgSize, instance);
         } catch (IOException e) {
             System.err.println("Failed to send command to " + ip + ": " + e.getMessage());
         }
     }
 
-    private void sendCommand(String command, String ip, int port) {
-        try (Socket socket = new Socket(ip, port)) {
-            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-            out.println(command);
-        } catch (IOException e) {
-            // Ignore
-        }
-    }
-
     private void waitForCompletion(long milliseconds) {
         try {
             Thread.sleep(milliseconds);
@@ -18,10 +18,47 @@ public class KGCServerMain {
 
         // 解析命令行参数
         int n = 256, m = 256;  // 默认向量维度
+        int setupThreads = 1;
+        boolean snapshot = true;
+        String snapshotKey = SystemParameters.FilePaths.MASTER_STATE_KEY;
+        boolean keyCache = true;
+        boolean virtualThreads = false;
+        int binaryPort = SystemParameters.NetworkConfig.KGC_BINARY_PORT;
+        int maxQueue = SystemParameters.AdmissionConfig.MAX_QUEUED_KEYGENS;
+        double clientRate = SystemParameters.AdmissionConfig.CLIENT_RATE_PER_SECOND;
+        long queueSlo = SystemParameters.AdmissionConfig.QUEUE_SLO_MILLIS;
 
         if (args.length >= 2) {
             n = Integer.parseInt(args[0]);
             m = Integer.parseInt(args[1]);
+
+            // 可选参数：--setup-threads <n>（0表示使用全部核心）、--no-snapshot、--snapshot-key <路径>、--no-key-cache、
+            // --virtual-threads（每连接一个虚拟线程，需Java 21+）、--binary-port <port>（0表示不启用）、
+            // --max-queue <n>（排队keyGen上限）、--client-rate <r>（每客户端每秒请求数，0不限速）、
+            // --queue-slo-ms <ms>（排队时间上限，0不限）
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].equals("--setup-threads") && i + 1 < args.length) {
+                    setupThreads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--no-snapshot")) {
+                    snapshot = false;
+                } else if (args[i].equals("--snapshot-key") && i + 1 < args.length) {
+                    snapshotKey = args[++i];
+                } else if (args[i].equals("--no-key-cache")) {
+                    keyCache = false;
+                } else if (args[i].equals("--virtual-threads")) {
+                    virtualThreads = true;
+                } else if (args[i].equals("--binary-port") && i + 1 < args.length) {
+                    binaryPort = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--max-queue") && i + 1 < args.length) {
+                    maxQueue = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--client-rate") && i + 1 < args.length) {
+                    clientRate = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("--queue-slo-ms") && i + 1 < args.length) {
+                    queueSlo = Long.parseLong(args[++i]);
+                } else {
+                    System.err.println("Unknown option: " + args[i]);
+                }
+            }
         } else {
             // 交互式输入
             Scanner scanner = new Scanner(System.in);
@@ -49,6 +86,15 @@ public class KGCServerMain {
         System.out.println("  Vector dimension n: " + n);
         System.out.println("  Vector dimension m: " + m);
         System.out.println("  KGC Port: " + SystemParameters.NetworkConfig.KGC_PORT);
+        System.out.println("  Binary protocol port: " + (binaryPort > 0 ? String.valueOf(binaryPort) : "disabled"));
+        System.out.println("  Admin port: 127.0.0.1:" + SystemParameters.NetworkConfig.KGC_ADMIN_PORT);
+        System.out.println("  Setup threads: " + (setupThreads == 0 ? "all cores" : setupThreads));
+        System.out.println("  Master state snapshot: " + (snapshot ? "enabled (key " + snapshotKey + ")" : "disabled"));
+        System.out.println("  Key cache: " + (keyCache ? "enabled" : "disabled"));
+        System.out.println("  Virtual threads: " + (virtualThreads ? "enabled" : "disabled"));
+        System.out.println("  Admission: max queue " + maxQueue +
+                ", client rate " + (clientRate > 0 ? clientRate + "/s" : "unlimited") +
+                ", queue SLO " + (queueSlo > 0 ? queueSlo + " ms" : "none"));
         System.out.println();
 
         // 创建必要的目录
@@ -57,6 +103,14 @@ public class KGCServerMain {
         try {
             // 创建并启动KGC服务器
             server = new KGCServer(SystemParameters.NetworkConfig.KGC_PORT);
+            server.setSetupParallelism(setupThreads);
+            server.setSnapshotEnabled(snapshot);
+            server.setSnapshotKeyFile(new File(snapshotKey));
+            server.setKeyCacheEnabled(keyCache);
+            server.setVirtualThreadsEnabled(virtualThreads);
+            server.setBinaryPort(binaryPort);
+            server.setAdmissionControl(maxQueue, clientRate,
+                    SystemParameters.AdmissionConfig.CLIENT_BURST, queueSlo);
 
             // 添加关闭钩子
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
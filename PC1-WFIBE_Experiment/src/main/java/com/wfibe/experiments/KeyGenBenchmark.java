@@ -0,0 +1,95 @@
+package com.wfibe.experiments;
+
+import com.wfibe.crypto.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * KGC预计算基准测试 - 在PC1上运行
+ * 对比固定基表和密钥生成幂表开启/关闭时的Setup与KeyGen耗时，以及每次KeyGen的堆分配量
+ *
+ * 用法: KeyGenBenchmark [n] [m] [iterations]
+ */
+public class KeyGenBenchmark {
+
+    private static final int ATTRIBUTE_COUNT = 50;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int m = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) :
+                SystemParameters.ExperimentConfig.ITERATIONS_PER_TEST;
+
+        System.out.println("\n=== KGC Precomputation Benchmark ===");
+        System.out.println("Vector dimensions: n=" + n + ", m=" + m);
+        System.out.println("Attributes per request: " + ATTRIBUTE_COUNT);
+        System.out.println("Iterations: " + iterations);
+        System.out.println();
+
+        KeyGenBenchmark benchmark = new KeyGenBenchmark();
+        System.out.println("Configuration              | Setup (ms) | KeyGen (ms) | Tables (MB) | Alloc/KeyGen (KB)");
+        benchmark.run("generic powZn", n, m, iterations, 0, false);
+        benchmark.run("fixed-base g1/g2", n, m, iterations,
+                SystemParameters.PrecomputationConfig.WINDOW_BITS, false);
+        benchmark.run("fixed-base + keyGen table", n, m, iterations,
+                SystemParameters.PrecomputationConfig.WINDOW_BITS, true);
+    }
+
+    private void run(String name, int n, int m, int iterations,
+                     int window, boolean keyTables) {
+        WFIBESystem system = new WFIBESystem();
+        system.setFixedBaseWindow(window);
+        system.setKeyTablesEnabled(keyTables);
+
+        WFIBESystem.SystemSetupResult setup =
+                system.setup(n, m, SystemParameters.PAIRING_PARAMS);
+        if (!setup.success) {
+            System.err.println(name + ": setup failed: " + setup.errorMessage);
+            return;
+        }
+
+        // 预先编码请求，只测量keyGen本身
+        Random random = new Random(42);
+        List<SparseVector> attrVectors = new ArrayList<>();
+        List<SparseVector> policyVectors = new ArrayList<>();
+        for (int i = 0; i < iterations; i++) {
+            Set<String> attributes = new HashSet<>();
+            Map<String, Integer> policy = new HashMap<>();
+            for (int j = 0; j < ATTRIBUTE_COUNT; j++) {
+                attributes.add("attr_" + random.nextInt(10000));
+                policy.put("policy_" + random.nextInt(10000), 1 + random.nextInt(3));
+            }
+            attrVectors.add(system.encodeAttributes(attributes, m));
+            policyVectors.add(system.encodePolicy(policy, n));
+        }
+
+        // 预热
+        for (int i = 0; i < Math.min(SystemParameters.ExperimentConfig.WARMUP_ROUNDS, iterations); i++) {
+            system.keyGen(attrVectors.get(i), policyVectors.get(i));
+        }
+
+        long allocStart = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            system.keyGen(attrVectors.get(i), policyVectors.get(i));
+        }
+        double avgKeyGen = (System.nanoTime() - start) / 1e6 / iterations;
+        double avgAllocKB = (allocatedBytes() - allocStart) / 1024.0 / iterations;
+
+        double tablesMB = (setup.fixedBaseTableSize + setup.keyTableSize) / 1048576.0;
+        System.out.printf("%-26s | %10d | %11.3f | %11.1f | %17.1f\n",
+                name, setup.setupTime, avgKeyGen, tablesMB, avgAllocKB);
+    }
+
+    /**
+     * 当前线程累计分配的堆字节数（HotSpot扩展接口，不支持时返回0）
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
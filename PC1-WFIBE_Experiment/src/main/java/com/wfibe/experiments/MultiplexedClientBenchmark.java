@@ -0,0 +1,180 @@
+package com.wfibe.experiments;
+
+import com.wfibe.crypto.*;
+import com.wfibe.network.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 长连接多路复用客户端基准测试 - 在PC1上运行
+ * 在本机启动KGC，用同样数量的请求比较：
+ * 每个请求新建一条连接（KGCClient，按并发数分配线程）与单条长连接上同时发出全部请求（MultiplexedKGCClient），
+ * 输出吞吐量和延迟分位数
+ *
+ * 用法: MultiplexedClientBenchmark [requests] [concurrency]
+ */
+public class MultiplexedClientBenchmark {
+
+    private static final int DIMENSION = 64;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+
+        System.out.println("\n=== Multiplexed KGC Client Benchmark ===");
+        System.out.println("Requests: " + requests);
+        System.out.println("Concurrency (connection-per-request): " + concurrency);
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.println();
+
+        int port = freePort();
+        int binaryPort = freePort();
+        KGCServer server = new KGCServer(port);
+        server.setSnapshotEnabled(false);
+        server.setKeyCacheEnabled(false);
+        server.setBinaryPort(binaryPort);
+        // 所有请求都来自本机同一地址，关闭按地址限速
+        server.setAdmissionControl(SystemParameters.AdmissionConfig.MAX_QUEUED_KEYGENS, 0,
+                SystemParameters.AdmissionConfig.CLIENT_BURST, SystemParameters.AdmissionConfig.QUEUE_SLO_MILLIS);
+
+        // 服务器逐请求打印日志，测量期间屏蔽输出
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start(DIMENSION, DIMENSION);
+            } catch (Exception e) {
+                stderr.println("Server failed: " + e.getMessage());
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        List<String> rows = new ArrayList<>();
+        try {
+            awaitListening(binaryPort);
+            rows.add(runPerConnection(port, requests, concurrency));
+            rows.add(runMultiplexed(binaryPort, requests));
+        } finally {
+            server.shutdown();
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+
+        System.out.println("Client                       | Completed | Failed | Throughput (req/s) | p50 (ms) | p99 (ms) | Wall (ms)");
+        for (String row : rows) {
+            System.out.println(row);
+        }
+    }
+
+    private static String runPerConnection(int port, int requests, int concurrency) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        List<Future<Long>> results = new ArrayList<>(requests);
+
+        long wallStart = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int index = i;
+            results.add(clients.submit(() -> {
+                KGCClient client = new KGCClient("127.0.0.1", port, "bench-" + index);
+                long start = System.nanoTime();
+                WFIBESystem.KeyGenResult result = client.requestKey(null, attributes(index), policy(index));
+                if (!result.success) {
+                    throw new IOException(result.errorMessage);
+                }
+                return System.nanoTime() - start;
+            }));
+        }
+
+        List<Long> latencies = new ArrayList<>(requests);
+        int failed = 0;
+        for (Future<Long> result : results) {
+            try {
+                latencies.add(result.get());
+            } catch (ExecutionException e) {
+                failed++;
+            }
+        }
+        long wall = System.nanoTime() - wallStart;
+        clients.shutdown();
+
+        return format("connection per request", latencies, requests - failed, failed, wall);
+    }
+
+    private static String runMultiplexed(int binaryPort, int requests) throws Exception {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>(requests));
+        List<CompletableFuture<WFIBESystem.KeyGenResult>> futures = new ArrayList<>(requests);
+
+        long wallStart;
+        try (MultiplexedKGCClient client = new MultiplexedKGCClient("127.0.0.1", binaryPort, "bench")) {
+            wallStart = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                long start = System.nanoTime();
+                futures.add(client.requestKeyAsync(null, attributes(i), policy(i))
+                        .whenComplete((result, error) -> latencies.add(System.nanoTime() - start)));
+            }
+
+            int failed = 0;
+            for (CompletableFuture<WFIBESystem.KeyGenResult> future : futures) {
+                try {
+                    if (!future.get().success) {
+                        failed++;
+                    }
+                } catch (ExecutionException e) {
+                    failed++;
+                }
+            }
+            long wall = System.nanoTime() - wallStart;
+            return format("multiplexed (1 connection)", new ArrayList<>(latencies), requests - failed, failed, wall);
+        }
+    }
+
+    private static Set<String> attributes(int index) {
+        return new HashSet<>(Arrays.asList("device:" + index, "role:sensor"));
+    }
+
+    private static Map<String, Integer> policy(int index) {
+        Map<String, Integer> policy = new HashMap<>();
+        policy.put("zone:" + (index % 16), 1);
+        return policy;
+    }
+
+    private static String format(String name, List<Long> latencies, int completed, int failed,
+                                 long wallNanos) {
+        Collections.sort(latencies);
+        return String.format("%-28s | %9d | %6d | %18.0f | %8.1f | %8.1f | %9d",
+                name, completed, failed, completed * 1e9 / wallNanos,
+                percentile(latencies, 50) / 1e6, percentile(latencies, 99) / 1e6,
+                wallNanos / 1_000_000);
+    }
+
+    private static long percentile(List<Long> sorted, int p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitListening(int port) throws InterruptedException {
+        while (true) {
+            try (Socket socket = new Socket("127.0.0.1", port)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+    }
+}
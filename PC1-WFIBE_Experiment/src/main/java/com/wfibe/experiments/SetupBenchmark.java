@@ -0,0 +1,52 @@
+package com.wfibe.experiments;
+
+import com.wfibe.crypto.*;
+
+/**
+ * Setup并行扩展性基准测试 - 在PC1上运行
+ * 线程数从1开始倍增到上限，输出各阶段耗时、加速比和并行效率
+ *
+ * 用法: SetupBenchmark [n] [m] [maxThreads]
+ */
+public class SetupBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int m = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) :
+                Runtime.getRuntime().availableProcessors();
+
+        System.out.println("\n=== Parallel Setup Scaling Benchmark ===");
+        System.out.println("Vector dimensions: n=" + n + ", m=" + m);
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.println();
+
+        // 预热一次，避免JIT编译计入单线程基线
+        runSetup(Math.min(n, 64), Math.min(m, 64), 1);
+
+        System.out.println("Threads | Total (ms) | Generators | Matrices |    MPK | KeyGen tables | Speedup | Efficiency");
+
+        long baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            WFIBESystem.SystemSetupResult result = runSetup(n, m, threads);
+            if (threads == 1) {
+                baseline = result.setupTime;
+            }
+
+            double speedup = result.setupTime > 0 ? (double) baseline / result.setupTime : 0;
+            System.out.printf("%7d | %10d | %10d | %8d | %6d | %13d | %6.2fx | %9.1f%%\n",
+                    threads, result.setupTime, result.generatorTime, result.matrixTime,
+                    result.mpkTime, result.keyTableTime, speedup, speedup / threads * 100);
+
+            if (threads < maxThreads && threads * 2 > maxThreads) {
+                threads = maxThreads / 2;  // 保证最后一轮测到maxThreads
+            }
+        }
+    }
+
+    private static WFIBESystem.SystemSetupResult runSetup(int n, int m, int threads) {
+        WFIBESystem system = new WFIBESystem();
+        system.setSetupParallelism(threads);
+        return system.setup(n, m, SystemParameters.PAIRING_PARAMS);
+    }
+}
@@ -0,0 +1,80 @@
+package com.wfibe.experiments;
+
+import com.wfibe.crypto.*;
+import java.io.File;
+import java.util.*;
+
+/**
+ * 主状态快照基准测试 - 在PC1上运行
+ * 对比完整Setup与从快照加载的耗时，并校验加载后生成的密钥与原系统一致
+ *
+ * 用法: SnapshotBenchmark [dim1 dim2 ...]
+ */
+public class SnapshotBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int[] dimensions = SystemParameters.ExperimentConfig.VECTOR_DIMENSIONS;
+        if (args.length > 0) {
+            dimensions = Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        }
+
+        System.out.println("\n=== Master State Snapshot Benchmark ===");
+        System.out.println("Dimension | Setup (ms) | Save (ms) | Load (ms) | Snapshot (MB) | Speedup | Keys match");
+
+        File dir = new File(SystemParameters.FilePaths.LOGS_DIR);
+        dir.mkdirs();
+        File file = new File(dir, "benchmark_" + SystemParameters.FilePaths.MASTER_STATE_SNAPSHOT);
+        File keyFile = new File(dir, "benchmark_master_state.key");
+
+        try {
+            for (int dim : dimensions) {
+                WFIBESystem system = new WFIBESystem();
+                WFIBESystem.SystemSetupResult setup =
+                        system.setup(dim, dim, SystemParameters.PAIRING_PARAMS);
+
+                long start = System.nanoTime();
+                MasterStateSnapshot.save(system, file, keyFile);
+                double saveTime = (System.nanoTime() - start) / 1e6;
+
+                start = System.nanoTime();
+                WFIBESystem loaded = MasterStateSnapshot.load(file, keyFile,
+                        MasterStateSnapshot.Profile.of(system));
+                double loadTime = (System.nanoTime() - start) / 1e6;
+
+                System.out.printf("%9d | %10d | %9.1f | %9.1f | %13.2f | %6.1fx | %s\n",
+                        dim, setup.setupTime, saveTime, loadTime,
+                        file.length() / 1048576.0, setup.setupTime / Math.max(loadTime, 0.001),
+                        keysMatch(system, loaded) ? "yes" : "NO");
+            }
+        } finally {
+            file.delete();
+            keyFile.delete();
+        }
+    }
+
+    /**
+     * 同一请求分别在原系统和加载后的系统上生成密钥，结果应逐字节相同
+     */
+    private static boolean keysMatch(WFIBESystem original, WFIBESystem loaded) {
+        if (loaded == null) {
+            return false;
+        }
+
+        Set<String> attributes = new HashSet<>(Arrays.asList("role:engineer", "dept:research", "level:3"));
+        Map<String, Integer> policy = new HashMap<>();
+        policy.put("role:manager", 2);
+        policy.put("dept:research", 1);
+
+        WFIBESystem.SecretKey a = keyGen(original, attributes, policy);
+        WFIBESystem.SecretKey b = keyGen(loaded, attributes, policy);
+        return Arrays.equals(a.sk_PA_1, b.sk_PA_1) && Arrays.equals(a.sk_PA_2, b.sk_PA_2) &&
+                Arrays.equals(a.sk_SB_1, b.sk_SB_1) && Arrays.equals(a.sk_SB_2, b.sk_SB_2);
+    }
+
+    private static WFIBESystem.SecretKey keyGen(WFIBESystem system, Set<String> attributes,
+                                                Map<String, Integer> policy) {
+        return system.keyGen(
+                system.encodeAttributes(attributes, system.getVectorDim_m()),
+                system.encodePolicy(policy, system.getVectorDim_n())).secretKey;
+    }
+}
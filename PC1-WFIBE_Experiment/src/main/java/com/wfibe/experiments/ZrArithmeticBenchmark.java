@@ -0,0 +1,116 @@
+package com.wfibe.experiments;
+
+import com.wfibe.crypto.*;
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Field;
+import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+
+/**
+ * Zr算术基准测试 - 在PC1上运行
+ * 对比JPBC Element路径与ZrMontgomery定长limb路径在主密钥矩阵运算上的耗时和堆分配量：
+ * 内积（Gram-Schmidt的范数/投影系数、keyGen的B·y）和投影相减
+ *
+ * 用法: ZrArithmeticBenchmark [dimension] [rounds]
+ */
+public class ZrArithmeticBenchmark {
+
+    private static final int MEASURE_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int dim = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Field Zp = PairingFactory.getPairing(SystemParameters.PAIRING_PARAMS).getZr();
+        ZrMontgomery zr = new ZrMontgomery(Zp.getOrder());
+
+        System.out.println("\n=== Zr Arithmetic Benchmark ===");
+        System.out.println("Modulus bits: " + Zp.getOrder().bitLength());
+        System.out.println("Vector dimension: " + dim);
+        System.out.println("Rounds per measurement: " + rounds);
+        System.out.println();
+
+        Element[] a = new Element[dim];
+        Element[] b = new Element[dim];
+        long[] aLimbs = zr.newVector(dim);
+        long[] bLimbs = zr.newVector(dim);
+        for (int j = 0; j < dim; j++) {
+            a[j] = Zp.newRandomElement();
+            b[j] = Zp.newRandomElement();
+            zr.set(aLimbs, j, a[j].toBigInteger());
+            zr.set(bLimbs, j, b[j].toBigInteger());
+        }
+
+        // 两条路径结果必须一致
+        long[] result = zr.newVector(1);
+        zr.dot(aLimbs, bLimbs, 0, dim, result, 0);
+        BigInteger expected = elementDot(Zp, a, b).toBigInteger();
+        if (!expected.equals(zr.get(result, 0))) {
+            System.err.println("Result mismatch between Element and ZrMontgomery paths");
+            return;
+        }
+
+        Element factor = Zp.newRandomElement();
+        long[] factorLimbs = zr.newVector(1);
+        zr.set(factorLimbs, 0, factor.toBigInteger());
+
+        System.out.println("Operation                     | ns/element | Alloc/op (KB)");
+        measure("dot, Element (duplicate)", dim, rounds, () -> elementDot(Zp, a, b));
+        measure("dot, ZrMontgomery", dim, rounds, () -> zr.dot(aLimbs, bLimbs, 0, dim, result, 0));
+        measure("axpy, Element (duplicate)", dim, rounds, () -> {
+            for (int j = 0; j < dim; j++) {
+                a[j].sub(b[j].duplicate().mul(factor));
+            }
+        });
+        measure("axpy, ZrMontgomery", dim, rounds, () -> {
+            for (int j = 0; j < dim; j++) {
+                zr.mul(result, 0, bLimbs, j, factorLimbs, 0);
+                zr.sub(aLimbs, j, aLimbs, j, result, 0);
+            }
+        });
+    }
+
+    private static Element elementDot(Field Zp, Element[] a, Element[] b) {
+        Element sum = Zp.newZeroElement();
+        for (int j = 0; j < a.length; j++) {
+            sum.add(a[j].duplicate().mul(b[j]));
+        }
+        return sum;
+    }
+
+    /**
+     * 预热后重复测量，取最快一轮
+     */
+    private static void measure(String name, int dim, int rounds, Runnable op) {
+        for (int i = 0; i < rounds; i++) {
+            op.run();
+        }
+
+        double best = Double.MAX_VALUE;
+        long allocStart = allocatedBytes();
+        for (int r = 0; r < MEASURE_ROUNDS; r++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                op.run();
+            }
+            best = Math.min(best, (double) (System.nanoTime() - start) / rounds / dim);
+        }
+        double allocKB = (allocatedBytes() - allocStart) / 1024.0 / rounds / MEASURE_ROUNDS;
+
+        System.out.printf("%-29s | %10.1f | %13.1f\n", name, best, allocKB);
+    }
+
+    /**
+     * 当前线程累计分配的堆字节数（HotSpot扩展接口，不支持时返回0）
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,312 @@
+package com.wfibe.network;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.*;
+
+/**
+ * KGC的keyGen准入控制
+ * 1. 每个客户端（连接的远端地址）一个令牌桶，限制单个客户端的请求速率
+ * 2. 排队等待keyGen的请求数有上限，超出时立即拒绝
+ * 3. 排队时间超过SLO的请求在开始计算前丢弃（客户端多半已超时，继续计算只会拖慢后面的请求）
+ * 4. 批量请求整体准入：只占一个令牌，一次预留全部排队名额；每个客户端同时只有一个批量请求在处理
+ * 被拒绝的请求带回建议的重试等待时间
+ */
+class AdmissionController {
+
+    static final String ANONYMOUS_CLIENT = "anonymous";
+
+    // 最多保留的令牌桶数，超出时淘汰最久未访问的桶
+    private static final int MAX_TRACKED_CLIENTS = 10000;
+
+    // 建议重试等待的下限（毫秒）
+    private static final long MIN_RETRY_AFTER_MILLIS = 10;
+
+    private final int maxQueued;
+    private final double clientRatePerSecond;
+    private final int clientBurst;
+    private final long queueSloNanos;
+
+    // 按访问顺序排列的LRU，O(1)淘汰；读写都在buckets上同步
+    private final Map<String, TokenBucket> buckets =
+            new LinkedHashMap<String, TokenBucket>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+                    return size() > MAX_TRACKED_CLIENTS;
+                }
+            };
+    private final AtomicInteger queued = new AtomicInteger();
+
+    // 有批量请求正在处理的客户端，由自身同步
+    private final Set<String> batchClients = new HashSet<>();
+
+    // 近期排队时间的指数滑动平均（纳秒），用作过载时的重试建议
+    private volatile double averageQueueWaitNanos;
+
+    // 统计
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedOverload = new AtomicLong();
+    private final AtomicLong rejectedRateLimit = new AtomicLong();
+    private final AtomicLong rejectedBatches = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong rejectedConnections = new AtomicLong();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+
+    /**
+     * @param maxQueued           排队中的keyGen上限
+     * @param clientRatePerSecond 每个客户端地址每秒的请求数，0表示不限速
+     * @param clientBurst         令牌桶容量（允许的突发请求数）
+     * @param queueSloMillis      排队时间上限，0表示不限
+     */
+    AdmissionController(int maxQueued, double clientRatePerSecond, int clientBurst, long queueSloMillis) {
+        this.maxQueued = maxQueued;
+        this.clientRatePerSecond = clientRatePerSecond;
+        this.clientBurst = Math.max(1, clientBurst);
+        this.queueSloNanos = queueSloMillis * 1_000_000;
+    }
+
+    /**
+     * 一个请求的准入凭证；被拒绝时reason和retryAfterMs有效
+     */
+    static final class Ticket {
+        boolean admitted;
+        String reason;
+        long retryAfterMs;
+        long enqueuedAt;
+        String batchClient;  // 批量凭证所属的客户端，单个请求为null
+    }
+
+    /**
+     * 请求进入keyGen队列前调用；准入后调用方必须调用begin或abandon
+     */
+    Ticket admit(String client) {
+        Ticket ticket = new Ticket();
+        long now = System.nanoTime();
+
+        if (clientRatePerSecond > 0) {
+            long waitNanos = bucket(client, now).tryTake(now);
+            if (waitNanos > 0) {
+                rejectedRateLimit.incrementAndGet();
+                return reject(ticket, "Rate limit exceeded for client " + clientName(client),
+                        waitNanos / 1_000_000);
+            }
+        }
+
+        int depth = queued.incrementAndGet();
+        if (depth > maxQueued) {
+            queued.decrementAndGet();
+            rejectedOverload.incrementAndGet();
+            return reject(ticket, "KGC overloaded: " + maxQueued + " key requests queued",
+                    (long) (averageQueueWaitNanos / 1_000_000));
+        }
+        peakQueued.accumulateAndGet(depth, Math::max);
+
+        admitted.incrementAndGet();
+        ticket.admitted = true;
+        ticket.enqueuedAt = now;
+        return ticket;
+    }
+
+    /**
+     * 批量请求进入keyGen队列前调用，整批一次性准入或拒绝
+     * 准入后凭证由批内各项共用，每项仍需各自调用begin或abandon；整批响应写完后调用endBatch
+     * 批内各项本来就在同一客户端队列中依次排队，因此不按排队SLO丢弃
+     */
+    Ticket admitBatch(String client, int count) {
+        Ticket ticket = new Ticket();
+        long now = System.nanoTime();
+        String name = clientName(client);
+
+        synchronized (batchClients) {
+            if (!batchClients.add(name)) {
+                rejectedBatches.incrementAndGet();
+                return reject(ticket, "A batch from client " + name + " is already in progress",
+                        (long) (averageQueueWaitNanos / 1_000_000));
+            }
+        }
+
+        if (clientRatePerSecond > 0) {
+            long waitNanos = bucket(client, now).tryTake(now);
+            if (waitNanos > 0) {
+                releaseBatch(name);
+                rejectedRateLimit.incrementAndGet();
+                return reject(ticket, "Rate limit exceeded for client " + name, waitNanos / 1_000_000);
+            }
+        }
+
+        int depth = queued.addAndGet(count);
+        if (depth > maxQueued) {
+            queued.addAndGet(-count);
+            releaseBatch(name);
+            rejectedOverload.incrementAndGet();
+            return reject(ticket, "KGC overloaded: no room for a batch of " + count + " in " + maxQueued +
+                    " queue slots", (long) (averageQueueWaitNanos / 1_000_000));
+        }
+        peakQueued.accumulateAndGet(depth, Math::max);
+
+        admitted.addAndGet(count);
+        ticket.admitted = true;
+        ticket.enqueuedAt = now;
+        ticket.batchClient = name;
+        return ticket;
+    }
+
+    /**
+     * 批量请求结束（全部响应写完或连接中断），该客户端可以再提交批量请求
+     */
+    void endBatch(Ticket ticket) {
+        if (ticket.batchClient != null) {
+            releaseBatch(ticket.batchClient);
+        }
+    }
+
+    private void releaseBatch(String name) {
+        synchronized (batchClients) {
+            batchClients.remove(name);
+        }
+    }
+
+    /**
+     * keyGen线程开始处理前调用，记录排队时间；排队超过SLO时返回false，ticket转为拒绝
+     */
+    boolean begin(Ticket ticket) {
+        queued.decrementAndGet();
+        long wait = System.nanoTime() - ticket.enqueuedAt;
+
+        queueWait.record(wait);
+        if (ticket.batchClient != null) {
+            // 批内后面的项要等前面的项算完，不计入重试建议
+            return true;
+        }
+        averageQueueWaitNanos = averageQueueWaitNanos * 0.9 + wait * 0.1;
+
+        if (queueSloNanos > 0 && wait > queueSloNanos) {
+            shed.incrementAndGet();
+            reject(ticket, "Queue wait " + wait / 1_000_000 + " ms exceeded SLO of " +
+                    queueSloNanos / 1_000_000 + " ms", (long) (averageQueueWaitNanos / 1_000_000));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 已准入的请求未能提交到线程池时调用，归还队列名额
+     */
+    void abandon(Ticket ticket) {
+        queued.decrementAndGet();
+    }
+
+    /**
+     * 连接队列已满，连接被直接关闭
+     */
+    void recordRejectedConnection() {
+        rejectedConnections.incrementAndGet();
+    }
+
+    private Ticket reject(Ticket ticket, String reason, long retryAfterMs) {
+        ticket.admitted = false;
+        ticket.reason = reason;
+        ticket.retryAfterMs = Math.max(MIN_RETRY_AFTER_MILLIS, retryAfterMs);
+        return ticket;
+    }
+
+    private TokenBucket bucket(String client, long now) {
+        String key = clientName(client);
+        synchronized (buckets) {
+            TokenBucket bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new TokenBucket(now);
+                buckets.put(key, bucket);
+            }
+            return bucket;
+        }
+    }
+
+    private static String clientName(String client) {
+        return client != null ? client : ANONYMOUS_CLIENT;
+    }
+
+    int getQueueDepth() {
+        return queued.get();
+    }
+
+    int getPeakQueueDepth() {
+        return peakQueued.get();
+    }
+
+    int getMaxQueued() {
+        return maxQueued;
+    }
+
+    long getQueueSloMillis() {
+        return queueSloNanos / 1_000_000;
+    }
+
+    double getClientRatePerSecond() {
+        return clientRatePerSecond;
+    }
+
+    long getAdmitted() {
+        return admitted.get();
+    }
+
+    long getRejectedOverload() {
+        return rejectedOverload.get();
+    }
+
+    long getRejectedRateLimit() {
+        return rejectedRateLimit.get();
+    }
+
+    long getRejectedBatches() {
+        return rejectedBatches.get();
+    }
+
+    long getShed() {
+        return shed.get();
+    }
+
+    long getRejectedConnections() {
+        return rejectedConnections.get();
+    }
+
+    /**
+     * 排队时间分布（纳秒）
+     */
+    LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * 单个客户端的令牌桶
+     */
+    private final class TokenBucket {
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(long now) {
+            this.tokens = clientBurst;
+            this.lastRefill = now;
+        }
+
+        /**
+         * 取一个令牌；成功返回0，否则返回等到下一个令牌的纳秒数
+         */
+        synchronized long tryTake(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) ((1 - tokens) / clientRatePerSecond * 1e9);
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(clientBurst, tokens + (now - lastRefill) * clientRatePerSecond / 1e9);
+            lastRefill = now;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.wfibe.network;
+
+import com.wfibe.crypto.*;
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 密钥请求/响应的定长前缀二进制编码
+ *
+ * 帧格式：长度(4，不含自身) | 类型(1) | 请求号(8) | 载荷
+ * 字符串：长度(2，0xFFFF表示null) | UTF-8字节；字节数组：长度(4) | 字节
+ *
+ * 请求载荷：实例id | 客户端id | 属性数(4) | 属性... | 策略项数(4) | (策略属性, 权重(4))...
+ * 响应载荷：成功标志(1) | 实例id | 成功时：生成耗时(8) | 密钥大小(4) | sk_PA_1 | sk_PA_2 | sk_SB_1 | sk_SB_2
+ *                                 失败时：错误信息 | 建议重试等待毫秒(8)
+ */
+final class BinaryKeyCodec {
+
+    static final byte TYPE_KEY_REQUEST = 1;
+    static final byte TYPE_KEY_RESPONSE = 2;
+
+    static final int LENGTH_FIELD = 4;
+    static final int HEADER_LENGTH = LENGTH_FIELD + 1 + 8;
+
+    // 单帧上限，等于连接缓冲区大小
+    static final int MAX_FRAME = SystemParameters.NetworkConfig.BUFFER_SIZE;
+
+    private static final int NULL_STRING = 0xFFFF;
+
+    private BinaryKeyCodec() {
+    }
+
+    /**
+     * 写入完整的请求帧，返回帧长度（含长度字段）
+     */
+    static int encodeRequest(KeyRequest request, long requestId, ByteBuffer out) {
+        int start = beginFrame(out, TYPE_KEY_REQUEST, requestId);
+
+        putString(out, request.instanceId);
+        putString(out, request.clientId);
+
+        out.putInt(request.attributes.size());
+        for (String attribute : request.attributes) {
+            putString(out, attribute);
+        }
+
+        out.putInt(request.policy.size());
+        for (Map.Entry<String, Integer> entry : request.policy.entrySet()) {
+            putString(out, entry.getKey());
+            out.putInt(entry.getValue());
+        }
+
+        return endFrame(out, start);
+    }
+
+    /**
+     * 解码请求载荷（帧头之后的部分）
+     * 属性名和策略属性不允许为null，否则抛出ProtocolException，避免在占用准入令牌后才在keyGen中失败
+     */
+    static KeyRequest decodeRequest(ByteBuffer in) throws ProtocolException {
+        KeyRequest request = new KeyRequest();
+        request.instanceId = getString(in);
+        request.clientId = getString(in);
+
+        int attributeCount = getCount(in);
+        request.attributes = new HashSet<>(attributeCount * 2);
+        for (int i = 0; i < attributeCount; i++) {
+            request.attributes.add(getNonNullString(in, "attribute"));
+        }
+
+        int policyCount = getCount(in);
+        request.policy = new HashMap<>(policyCount * 2);
+        for (int i = 0; i < policyCount; i++) {
+            request.policy.put(getNonNullString(in, "policy attribute"), in.getInt());
+        }
+
+        return request;
+    }
+
+    /**
+     * 写入完整的响应帧，返回帧长度（含长度字段）
+     */
+    static int encodeResponse(KeyResponse response, long requestId, ByteBuffer out) {
+        int start = beginFrame(out, TYPE_KEY_RESPONSE, requestId);
+
+        out.put((byte) (response.success ? 1 : 0));
+        putString(out, response.instanceId);
+
+        if (response.success) {
+            out.putLong(response.keyGenTime);
+            out.putInt(response.keySize);
+            putBytes(out, response.secretKey.sk_PA_1);
+            putBytes(out, response.secretKey.sk_PA_2);
+            putBytes(out, response.secretKey.sk_SB_1);
+            putBytes(out, response.secretKey.sk_SB_2);
+        } else {
+            putString(out, response.errorMessage);
+            out.putLong(response.retryAfterMs);
+        }
+
+        return endFrame(out, start);
+    }
+
+    /**
+     * 解码响应载荷（帧头之后的部分）
+     */
+    static KeyResponse decodeResponse(ByteBuffer in) {
+        KeyResponse response = new KeyResponse();
+        response.success = in.get() != 0;
+        response.instanceId = getString(in);
+
+        if (response.success) {
+            response.keyGenTime = in.getLong();
+            response.keySize = in.getInt();
+            WFIBESystem.SecretKey key = new WFIBESystem.SecretKey();
+            key.sk_PA_1 = getBytes(in);
+            key.sk_PA_2 = getBytes(in);
+            key.sk_SB_1 = getBytes(in);
+            key.sk_SB_2 = getBytes(in);
+            response.secretKey = key;
+        } else {
+            response.errorMessage = getString(in);
+            response.retryAfterMs = in.getLong();
+        }
+
+        return response;
+    }
+
+    /**
+     * 缓冲区中从position起是否已有一个完整的帧；帧长度非法时抛出ProtocolException
+     */
+    static boolean hasCompleteFrame(ByteBuffer in) throws ProtocolException {
+        if (in.remaining() < LENGTH_FIELD) {
+            return false;
+        }
+        int length = in.getInt(in.position());
+        if (length < HEADER_LENGTH - LENGTH_FIELD || length > MAX_FRAME - LENGTH_FIELD) {
+            throw new ProtocolException("Invalid frame length: " + length);
+        }
+        return in.remaining() >= LENGTH_FIELD + length;
+    }
+
+    private static int beginFrame(ByteBuffer out, byte type, long requestId) {
+        int start = out.position();
+        out.putInt(0);  // 长度在endFrame中回填
+        out.put(type);
+        out.putLong(requestId);
+        return start;
+    }
+
+    private static int endFrame(ByteBuffer out, int start) {
+        int frameLength = out.position() - start;
+        out.putInt(start, frameLength - LENGTH_FIELD);
+        return frameLength;
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("String too long for binary frame: " + bytes.length);
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == NULL_STRING) {
+            return null;
+        }
+        checkRemaining(in, length);
+        if (!in.hasArray()) {
+            // 直接缓冲区没有底层数组，先拷出字节
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length,
+                StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static String getNonNullString(ByteBuffer in, String what) throws ProtocolException {
+        String value = getString(in);
+        if (value == null) {
+            throw new ProtocolException("Null " + what + " in key request");
+        }
+        return value;
+    }
+
+    private static void putBytes(ByteBuffer out, byte[] value) {
+        out.putInt(value.length);
+        out.put(value);
+    }
+
+    private static byte[] getBytes(ByteBuffer in) {
+        int length = in.getInt();
+        checkRemaining(in, length);
+        byte[] value = new byte[length];
+        in.get(value);
+        return value;
+    }
+
+    /**
+     * 读取元素个数，并按每个元素至少2字节校验，防止伪造的大计数导致预分配过大
+     */
+    private static int getCount(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0 || (long) count * 2 > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    private static void checkRemaining(ByteBuffer in, int length) {
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.wfibe.network;
+
+import com.wfibe.crypto.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * KGC的非阻塞二进制协议前端
+ * 单个Selector线程负责接受连接和收发帧，密钥生成交给Handler异步执行，完成后由Selector线程写回
+ * 同一连接可连续发送多个请求，响应按完成顺序返回，由帧中的请求号对应
+ *
+ * 每个连接只占用一个池化的读缓冲区，以及有数据待发送时的一个池化写缓冲区；响应按实际帧长编码后排队，
+ * 由Selector线程合并拷入写缓冲区发送。未完成的请求数或待发送字节数达到上限时暂停读取该连接（关闭OP_READ），
+ * 不读回响应、只管发送请求的客户端因此不能让服务器无限占用内存
+ */
+class BinaryProtocolServer implements Runnable {
+
+    /**
+     * 请求处理回调：提交keyGen并返回结果的Future；帧中的请求号是客户端的关联号，只用于回写响应
+     */
+    interface Handler {
+        CompletableFuture<KeyResponse> submit(KeyRequest request, String clientAddress);
+    }
+
+    // 池中最多保留的空闲缓冲区数
+    private static final int MAX_POOLED_BUFFERS = 256;
+
+    // 单个连接的背压上限：已分发未响应的请求数、已编码未发送的字节数
+    private static final int MAX_IN_FLIGHT = 1024;
+    private static final long MAX_QUEUED_BYTES = 1 << 20;
+
+    // 工作线程编码响应用的临时缓冲区，编码后按帧长拷出
+    private static final ThreadLocal<ByteBuffer> ENCODE_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(BinaryKeyCodec.MAX_FRAME));
+
+    private final int port;
+    private final KGCMetrics metrics;
+    private final Handler handler;
+    private final DirectBufferPool buffers = new DirectBufferPool(
+            SystemParameters.NetworkConfig.BUFFER_SIZE, MAX_POOLED_BUFFERS);
+
+    // 工作线程写好响应后把连接放入此队列，由Selector线程发送
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+
+    BinaryProtocolServer(int port, KGCMetrics metrics, Handler handler) {
+        this.port = port;
+        this.metrics = metrics;
+        this.handler = handler;
+    }
+
+    void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        thread = new Thread(this, "kgc-binary");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void close() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        try {
+            if (thread != null) {
+                thread.join(5000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+
+                Connection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    flush(pending);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(connection);
+                        }
+                    } catch (IOException | BufferUnderflowException e) {
+                        // 对端断开或帧格式错误，关闭该连接
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Binary protocol server failed: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+
+        InetSocketAddress remote = (InetSocketAddress) channel.getRemoteAddress();
+        Connection connection = new Connection(channel, remote.getAddress().getHostAddress());
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    /**
+     * 读取数据并解析缓冲区中的完整帧，不完整的部分留到下次读取
+     */
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.readBuffer) < 0) {
+            connection.close();
+            return;
+        }
+        parseFrames(connection);
+    }
+
+    /**
+     * 解析并分发读缓冲区中的完整帧；达到背压上限时停止，剩余的帧留在缓冲区中，恢复读取时再处理
+     */
+    private void parseFrames(Connection connection) throws IOException {
+        ByteBuffer in = connection.readBuffer;
+        in.flip();
+        while (!connection.overLimit() && BinaryKeyCodec.hasCompleteFrame(in)) {
+            long frameStart = System.nanoTime();
+            int frameEnd = in.position() + BinaryKeyCodec.LENGTH_FIELD + in.getInt();
+            byte type = in.get();
+            long requestId = in.getLong();
+            if (type != BinaryKeyCodec.TYPE_KEY_REQUEST) {
+                throw new ProtocolException("Unexpected frame type: " + type);
+            }
+
+            ByteBuffer payload = in.slice();
+            payload.limit(frameEnd - in.position());
+            KeyRequest request = BinaryKeyCodec.decodeRequest(payload);
+            in.position(frameEnd);
+            metrics.decode.recordSince(frameStart);
+
+            dispatch(connection, request, requestId, frameStart);
+        }
+        in.compact();
+        updateInterest(connection);
+    }
+
+    private void dispatch(Connection connection, KeyRequest request, long requestId, long frameStart) {
+        connection.inFlight.incrementAndGet();
+
+        CompletableFuture<KeyResponse> future;
+        try {
+            future = handler.submit(request, connection.address);
+        } catch (RuntimeException e) {
+            // 服务器正在关闭等
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((result, error) -> {
+            KeyResponse response = result;
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                        error.getCause() : error;
+                response = failure(cause.getMessage());
+            }
+
+            long encodeStart = System.nanoTime();
+            ByteBuffer frame = encode(response, requestId);
+            metrics.serialize.recordSince(encodeStart);
+            metrics.total.recordSince(frameStart);
+
+            connection.queuedBytes.addAndGet(frame.remaining());
+            connection.writeQueue.add(frame);
+            connection.inFlight.decrementAndGet();
+
+            pendingWrites.add(connection);
+            selector.wakeup();
+        });
+    }
+
+    /**
+     * 编码为恰好等于帧长的堆缓冲区；超出单帧上限的响应改为错误响应
+     */
+    private static ByteBuffer encode(KeyResponse response, long requestId) {
+        ByteBuffer scratch = ENCODE_BUFFER.get();
+        int length;
+        try {
+            scratch.clear();
+            length = BinaryKeyCodec.encodeResponse(response, requestId, scratch);
+        } catch (BufferOverflowException | IllegalArgumentException e) {
+            scratch.clear();
+            length = BinaryKeyCodec.encodeResponse(failure("Response exceeds frame limit"), requestId, scratch);
+        }
+        return ByteBuffer.wrap(Arrays.copyOf(scratch.array(), length));
+    }
+
+    private static KeyResponse failure(String message) {
+        KeyResponse response = new KeyResponse();
+        response.success = false;
+        response.errorMessage = message;
+        return response;
+    }
+
+    /**
+     * 把排队的响应合并拷入写缓冲区并发送；套接字写满时保留OP_WRITE，等可写时继续。
+     * 发送后若已低于背压上限，继续处理读缓冲区中暂停的帧
+     */
+    private void flush(Connection connection) {
+        if (connection.closed) {
+            connection.writeQueue.clear();
+            return;
+        }
+
+        try {
+            while (true) {
+                ByteBuffer out = connection.writeBuffer;
+                if (out == null) {
+                    if (connection.writeQueue.isEmpty()) {
+                        break;
+                    }
+                    out = connection.writeBuffer = buffers.acquire();
+                }
+
+                ByteBuffer frame;
+                while ((frame = connection.writeQueue.peek()) != null && frame.remaining() <= out.remaining()) {
+                    connection.writeQueue.poll();
+                    connection.queuedBytes.addAndGet(-frame.remaining());
+                    out.put(frame);
+                }
+
+                out.flip();
+                connection.channel.write(out);
+                boolean drained = !out.hasRemaining();
+                out.compact();
+                if (!drained) {
+                    break;
+                }
+                if (connection.writeQueue.isEmpty()) {
+                    buffers.release(out);
+                    connection.writeBuffer = null;
+                    break;
+                }
+            }
+
+            if (connection.readPaused && !connection.overLimit()) {
+                parseFrames(connection);
+            } else {
+                updateInterest(connection);
+            }
+        } catch (IOException | BufferUnderflowException | CancelledKeyException e) {
+            connection.close();
+        }
+    }
+
+    /**
+     * 按背压状态和待发送数据设置关注的事件；只在Selector线程中调用
+     */
+    private void updateInterest(Connection connection) {
+        if (connection.closed) {
+            return;
+        }
+        connection.readPaused = connection.overLimit();
+        int ops = connection.readPaused ? 0 : SelectionKey.OP_READ;
+        if (connection.writeBuffer != null || !connection.writeQueue.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        connection.key.interestOps(ops);
+    }
+
+    private final class Connection {
+        final SocketChannel channel;
+        final String address;  // 远端地址，用于准入控制和公平调度
+        final ByteBuffer readBuffer = buffers.acquire();
+        final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicLong queuedBytes = new AtomicLong();
+        ByteBuffer writeBuffer;  // 有数据待发送时才从池中取得
+        boolean readPaused;
+        SelectionKey key;
+        volatile boolean closed;
+
+        Connection(SocketChannel channel, String address) {
+            this.channel = channel;
+            this.address = address;
+        }
+
+        boolean overLimit() {
+            return inFlight.get() >= MAX_IN_FLIGHT || queuedBytes.get() >= MAX_QUEUED_BYTES;
+        }
+
+        /**
+         * 只在Selector线程中调用
+         */
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            buffers.release(readBuffer);
+            if (writeBuffer != null) {
+                buffers.release(writeBuffer);
+                writeBuffer = null;
+            }
+            writeQueue.clear();
+        }
+    }
+}
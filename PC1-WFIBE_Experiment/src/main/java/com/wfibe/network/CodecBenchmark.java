@@ -0,0 +1,186 @@
+package com.wfibe.network;
+
+import com.wfibe.crypto.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * 密钥请求/响应编解码基准测试 - 在PC1上运行
+ * 比较二进制帧与Java对象序列化（每次新建对象流，与KGC连接处理方式一致）的
+ * 单条编码/解码耗时、线上字节数和每次操作的堆分配量
+ *
+ * 用法: CodecBenchmark [attributes] [iterations]
+ */
+public class CodecBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    private interface Codec {
+        byte[] encode() throws Exception;
+
+        Object decode(byte[] frame) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int attributes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+        KeyRequest request = sampleRequest(attributes);
+        KeyResponse response = sampleResponse();
+
+        System.out.println("\n=== Key Message Codec Benchmark ===");
+        System.out.println("Attributes / policy entries per request: " + attributes);
+        System.out.println("Iterations: " + iterations);
+        System.out.println();
+
+        System.out.println("Message  | Codec          | Bytes | Encode (ns/op) | Decode (ns/op) | Encode alloc (B/op) | Decode alloc (B/op)");
+        run("request", "binary", binaryRequest(request), iterations);
+        run("request", "serialization", serialized(request), iterations);
+        run("response", "binary", binaryResponse(response), iterations);
+        run("response", "serialization", serialized(response), iterations);
+    }
+
+    private static void run(String message, String name, Codec codec, int iterations) throws Exception {
+        byte[] frame = codec.encode();
+        Object sink = null;
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (int i = 0; i < iterations; i++) {
+                sink = codec.decode(codec.encode());
+            }
+        }
+
+        long allocStart = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = codec.encode();
+        }
+        long encodeTime = System.nanoTime() - start;
+        long encodeAlloc = allocStart < 0 ? -1 : allocatedBytes() - allocStart;
+
+        allocStart = allocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = codec.decode(frame);
+        }
+        long decodeTime = System.nanoTime() - start;
+        long decodeAlloc = allocStart < 0 ? -1 : allocatedBytes() - allocStart;
+
+        if (sink == null) {
+            throw new IllegalStateException();
+        }
+
+        System.out.printf("%-8s | %-14s | %5d | %14.0f | %14.0f | %19s | %19s\n",
+                message, name, frame.length,
+                (double) encodeTime / iterations, (double) decodeTime / iterations,
+                formatAlloc(encodeAlloc, iterations), formatAlloc(decodeAlloc, iterations));
+    }
+
+    private static Codec binaryRequest(KeyRequest request) {
+        ByteBuffer buffer = ByteBuffer.allocate(SystemParameters.NetworkConfig.BUFFER_SIZE);
+        return new Codec() {
+            public byte[] encode() {
+                buffer.clear();
+                int length = BinaryKeyCodec.encodeRequest(request, 1L, buffer);
+                return Arrays.copyOf(buffer.array(), length);
+            }
+
+            public Object decode(byte[] frame) throws Exception {
+                return BinaryKeyCodec.decodeRequest(payload(frame));
+            }
+        };
+    }
+
+    private static Codec binaryResponse(KeyResponse response) {
+        ByteBuffer buffer = ByteBuffer.allocate(SystemParameters.NetworkConfig.BUFFER_SIZE);
+        return new Codec() {
+            public byte[] encode() {
+                buffer.clear();
+                int length = BinaryKeyCodec.encodeResponse(response, 1L, buffer);
+                return Arrays.copyOf(buffer.array(), length);
+            }
+
+            public Object decode(byte[] frame) {
+                return BinaryKeyCodec.decodeResponse(payload(frame));
+            }
+        };
+    }
+
+    private static Codec serialized(Object message) {
+        return new Codec() {
+            public byte[] encode() throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(bytes);
+                out.writeObject(message);
+                out.flush();
+                return bytes.toByteArray();
+            }
+
+            public Object decode(byte[] frame) throws Exception {
+                ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(frame));
+                return in.readObject();
+            }
+        };
+    }
+
+    private static ByteBuffer payload(byte[] frame) {
+        return ByteBuffer.wrap(frame, BinaryKeyCodec.HEADER_LENGTH,
+                frame.length - BinaryKeyCodec.HEADER_LENGTH);
+    }
+
+    private static KeyRequest sampleRequest(int attributes) {
+        Set<String> attributeSet = new HashSet<>();
+        Map<String, Integer> policy = new HashMap<>();
+        for (int i = 0; i < attributes; i++) {
+            attributeSet.add("device:sensor-" + i);
+            policy.put("zone:building-" + i, 1 + i % 5);
+        }
+        KeyRequest request = new KeyRequest(attributeSet, policy, "codec-benchmark");
+        request.instanceId = "dim-256x256";
+        return request;
+    }
+
+    /**
+     * 密钥分量长度取Type A曲线G2元素的大小（128字节）
+     */
+    private static KeyResponse sampleResponse() {
+        Random random = new Random(42);
+        WFIBESystem.SecretKey key = new WFIBESystem.SecretKey();
+        key.sk_PA_1 = randomBytes(random, 128);
+        key.sk_PA_2 = randomBytes(random, 128);
+        key.sk_SB_1 = randomBytes(random, 128);
+        key.sk_SB_2 = randomBytes(random, 128);
+
+        KeyResponse response = new KeyResponse();
+        response.success = true;
+        response.instanceId = "dim-256x256";
+        response.secretKey = key;
+        response.keyGenTime = 12;
+        response.keySize = 512;
+        return response;
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * 当前线程累计堆分配字节数；JVM不支持时返回-1
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static String formatAlloc(long bytes, int iterations) {
+        return bytes < 0 ? "n/a" : String.valueOf(bytes / iterations);
+    }
+}
@@ -0,0 +1,121 @@
+package com.wfibe.network;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * keyGen的按客户端公平调度
+ * 每个客户端一个FIFO队列，有任务的客户端轮流取出一个任务交给keyGen线程池；线程池中同时最多parallelism个任务，
+ * 其余留在各自客户端的队列中，因此一个客户端的大批量请求不会整体排在其他客户端前面
+ */
+class FairKeyGenScheduler {
+
+    private final ExecutorService workers;
+    private final int parallelism;
+
+    // 以下字段由this保护；queues中的队列都非空且恰好在ready中出现一次
+    private final Map<String, ClientQueue> queues = new HashMap<>();
+    private final ArrayDeque<ClientQueue> ready = new ArrayDeque<>();
+    private int running;
+
+    FairKeyGenScheduler(ExecutorService workers, int parallelism) {
+        this.workers = workers;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 把任务放入client的队列；线程池拒绝执行（服务器关闭）时调用onRejected
+     */
+    void submit(String client, Runnable task, Consumer<RuntimeException> onRejected) {
+        List<Entry> rejected;
+        synchronized (this) {
+            ClientQueue queue = queues.computeIfAbsent(client, ClientQueue::new);
+            queue.entries.add(new Entry(task, onRejected));
+            if (queue.entries.size() == 1) {
+                ready.add(queue);
+            }
+            rejected = dispatch();
+        }
+        notifyRejected(rejected);
+    }
+
+    /**
+     * 当前有任务排队的客户端数
+     */
+    synchronized int getWaitingClients() {
+        return queues.size();
+    }
+
+    private void finished() {
+        List<Entry> rejected;
+        synchronized (this) {
+            running--;
+            rejected = dispatch();
+        }
+        notifyRejected(rejected);
+    }
+
+    /**
+     * 按轮转顺序把任务交给线程池，直到占满parallelism；调用方持有this
+     */
+    private List<Entry> dispatch() {
+        List<Entry> rejected = Collections.emptyList();
+        while (running < parallelism && !ready.isEmpty()) {
+            ClientQueue queue = ready.poll();
+            Entry entry = queue.entries.poll();
+            if (queue.entries.isEmpty()) {
+                queues.remove(queue.client);
+            } else {
+                ready.add(queue);
+            }
+
+            try {
+                workers.execute(() -> {
+                    try {
+                        entry.task.run();
+                    } finally {
+                        finished();
+                    }
+                });
+                running++;
+            } catch (RejectedExecutionException e) {
+                if (rejected.isEmpty()) {
+                    rejected = new ArrayList<>();
+                }
+                entry.error = e;
+                rejected.add(entry);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * 在锁外回调，避免回调中的逻辑持有调度器的锁
+     */
+    private static void notifyRejected(List<Entry> rejected) {
+        for (Entry entry : rejected) {
+            entry.onRejected.accept(entry.error);
+        }
+    }
+
+    private static final class ClientQueue {
+        final String client;
+        final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+        ClientQueue(String client) {
+            this.client = client;
+        }
+    }
+
+    private static final class Entry {
+        final Runnable task;
+        final Consumer<RuntimeException> onRejected;
+        RuntimeException error;
+
+        Entry(Runnable task, Consumer<RuntimeException> onRejected) {
+            this.task = task;
+            this.onRejected = onRejected;
+        }
+    }
+}
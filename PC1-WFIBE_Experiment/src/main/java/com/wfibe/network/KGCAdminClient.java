@@ -0,0 +1,72 @@
+package com.wfibe.network;
+
+import com.wfibe.crypto.*;
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * KGC实例管理客户端
+ * 在运行中的KGC上创建、退役和列出系统实例，维度扫描无需重启KGC进程
+ * 管理端口只监听KGC本机的回环地址，因此只能在KGC所在的PC1上使用
+ */
+public class KGCAdminClient {
+
+    private final String host;
+    private final int port;
+
+    public KGCAdminClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * 创建实例并返回其公共参数；Setup在KGC端执行，读超时不作限制
+     */
+    public WFIBESystem.PublicParameters createInstance(String instanceId, int n, int m)
+            throws IOException {
+        InstanceCommandResult result = send(
+                new InstanceCommand(InstanceCommand.CREATE, instanceId, n, m), 0);
+        return result.publicParameters;
+    }
+
+    public void retireInstance(String instanceId) throws IOException {
+        send(new InstanceCommand(InstanceCommand.RETIRE, instanceId, 0, 0),
+                SystemParameters.NetworkConfig.READ_TIMEOUT);
+    }
+
+    /**
+     * 列出KGC上的实例，格式为 id -> "<n>x<m>"
+     */
+    public Map<String, String> listInstances() throws IOException {
+        InstanceCommandResult result = send(
+                new InstanceCommand(InstanceCommand.LIST, null, 0, 0),
+                SystemParameters.NetworkConfig.READ_TIMEOUT);
+        return result.instances;
+    }
+
+    private InstanceCommandResult send(InstanceCommand command, int readTimeout) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port),
+                    SystemParameters.NetworkConfig.CONNECTION_TIMEOUT);
+            socket.setSoTimeout(readTimeout);
+
+            ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            out.writeObject(command);
+            out.flush();
+
+            ObjectInputStream in = new ObjectInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            InstanceCommandResult result = (InstanceCommandResult) in.readObject();
+
+            if (!result.success) {
+                throw new IOException("KGC rejected instance command: " + result.errorMessage);
+            }
+            return result;
+
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unexpected response from KGC", e);
+        }
+    }
+}
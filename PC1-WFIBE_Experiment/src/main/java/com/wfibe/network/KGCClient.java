@@ -0,0 +1,131 @@
+package com.wfibe.network;
+
+import com.wfibe.crypto.*;
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * KGC密钥请求客户端
+ * 批量接口在一次连接中提交多组(属性, 策略)，服务器并行计算并按完成顺序流式返回，用于设备批量注册
+ * 每次调用新建一条连接；需要持续发送大量请求时使用MultiplexedKGCClient
+ */
+public class KGCClient {
+
+    private final String host;
+    private final int port;
+    private final String clientId;
+
+    public KGCClient(String host, int port, String clientId) {
+        this.host = host;
+        this.port = port;
+        this.clientId = clientId;
+    }
+
+    /**
+     * 请求单个密钥
+     */
+    public WFIBESystem.KeyGenResult requestKey(String instanceId, Set<String> attributes,
+                                               Map<String, Integer> policy) throws IOException {
+        KeyRequest request = new KeyRequest(attributes, policy, clientId);
+        request.instanceId = instanceId;
+
+        try (Socket socket = connect()) {
+            ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            out.writeObject(request);
+            out.flush();
+
+            ObjectInputStream in = new ObjectInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            return toResult((KeyResponse) in.readObject());
+
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unexpected response from KGC", e);
+        }
+    }
+
+    /**
+     * 批量请求密钥，结果按请求顺序返回
+     */
+    public List<WFIBESystem.KeyGenResult> requestKeys(String instanceId,
+                                                      List<Set<String>> attributes,
+                                                      List<Map<String, Integer>> policies)
+            throws IOException {
+        return requestKeys(instanceId, attributes, policies, (index, result) -> { });
+    }
+
+    /**
+     * 批量请求密钥；每收到一个结果即回调listener(请求下标, 结果)，回调顺序为服务器完成顺序
+     * 服务器整批拒绝（过载、限速或该客户端已有批量请求在处理）时抛出IOException
+     */
+    public List<WFIBESystem.KeyGenResult> requestKeys(String instanceId,
+                                                      List<Set<String>> attributes,
+                                                      List<Map<String, Integer>> policies,
+                                                      BiConsumer<Integer, WFIBESystem.KeyGenResult> listener)
+            throws IOException {
+        if (attributes.size() != policies.size()) {
+            throw new IllegalArgumentException("Attribute and policy lists differ in length");
+        }
+
+        int count = attributes.size();
+        List<KeyRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            KeyRequest request = new KeyRequest(attributes.get(i), policies.get(i), clientId);
+            request.instanceId = instanceId;
+            requests.add(request);
+        }
+
+        WFIBESystem.KeyGenResult[] results = new WFIBESystem.KeyGenResult[count];
+        try (Socket socket = connect()) {
+            ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            out.writeObject(new BatchKeyRequest(requests, clientId));
+            out.flush();
+
+            ObjectInputStream in = new ObjectInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            for (int received = 0; received < count; received++) {
+                KeyResponse response = (KeyResponse) in.readObject();
+                if (response.index < 0 || response.index >= count) {
+                    throw new IOException("KGC rejected batch: " + response.errorMessage +
+                            (response.retryAfterMs > 0 ? " (retry after " + response.retryAfterMs + " ms)" : ""));
+                }
+
+                WFIBESystem.KeyGenResult result = toResult(response);
+                results[response.index] = result;
+                listener.accept(response.index, result);
+            }
+
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unexpected response from KGC", e);
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port),
+                    SystemParameters.NetworkConfig.CONNECTION_TIMEOUT);
+            socket.setSoTimeout(SystemParameters.NetworkConfig.READ_TIMEOUT);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    static WFIBESystem.KeyGenResult toResult(KeyResponse response) {
+        WFIBESystem.KeyGenResult result = new WFIBESystem.KeyGenResult();
+        result.success = response.success;
+        result.secretKey = response.secretKey;
+        result.keyGenTime = response.keyGenTime;
+        result.keySize = response.keySize;
+        result.errorMessage = response.errorMessage;
+        result.retryAfterMs = response.retryAfterMs;
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package com.wfibe.network;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * KGC请求计数和各阶段延迟直方图
+ * 计数用LongAdder、延迟用无锁直方图，可由连接线程、keyGen线程和NIO线程并发更新
+ *
+ * 阶段：decode（请求反序列化/解码）、encodeVectors（属性和策略编码为向量）、
+ *       keyGen（密钥生成，含缓存命中）、serialize（响应序列化/编码）、total（收到请求到写出响应）
+ */
+class KGCMetrics {
+
+    final LongAdder totalRequests = new LongAdder();
+    final LongAdder successfulRequests = new LongAdder();
+    final LongAdder failedRequests = new LongAdder();
+
+    final LatencyHistogram decode = new LatencyHistogram();
+    final LatencyHistogram encodeVectors = new LatencyHistogram();
+    final LatencyHistogram keyGen = new LatencyHistogram();
+    final LatencyHistogram serialize = new LatencyHistogram();
+    final LatencyHistogram total = new LatencyHistogram();
+
+    /**
+     * 成功率（百分比）；没有请求时返回-1
+     */
+    double getSuccessRate() {
+        long requests = totalRequests.sum();
+        return requests == 0 ? -1 : (double) successfulRequests.sum() / requests * 100;
+    }
+
+    /**
+     * 各阶段的分位数，每阶段一行
+     */
+    String describeLatencies(String indent) {
+        StringBuilder sb = new StringBuilder();
+        append(sb, indent, "decode", decode);
+        append(sb, indent, "encode vectors", encodeVectors);
+        append(sb, indent, "keyGen", keyGen);
+        append(sb, indent, "serialize", serialize);
+        append(sb, indent, "total", total);
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, String indent, String stage, LatencyHistogram histogram) {
+        sb.append(indent).append(String.format("%-16s", stage + ":")).append(histogram.summary()).append("\n");
+    }
+}
@@ -3,35 +3,73 @@ package com.wfibe.network;
 import com.wfibe.crypto.*;
 import java.net.*;
 import java.io.*;
+import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.*;
-import java.text.SimpleDateFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 /**
  * KGC服务器 - 在PC1上运行
  * 负责系统初始化和密钥生成
+ * 同一进程可托管多个不同维度的命名系统实例，共享同一个配对；启动时的实例名为"default"
  */
 public class KGCServer {
 
+    public static final String DEFAULT_INSTANCE = "default";
+
     private ServerSocket serverSocket;
-    private WFIBESystem system;
+    private final Map<String, WFIBESystem> instances = new ConcurrentHashMap<>();
     private ExecutorService executor;
+    private final ExecutorService keyGenExecutor;  // keyGen计算（CPU密集），线程数等于核心数
+    private final FairKeyGenScheduler keyGenScheduler;  // 按客户端地址轮转地向keyGenExecutor派发
+    private boolean virtualThreads = false;
+    private String connectionMode;
     private boolean running;
     private int port;
-
-    // 统计信息
-    private long totalRequests = 0;
-    private long totalKeyGenTime = 0;
-    private long successfulRequests = 0;
-    private long failedRequests = 0;
+    private int binaryPort = SystemParameters.NetworkConfig.KGC_BINARY_PORT;
+    private BinaryProtocolServer binaryServer;
+    private int adminPort = SystemParameters.NetworkConfig.KGC_ADMIN_PORT;
+    private ServerSocket adminSocket;
+    private final ExecutorService instanceExecutor;  // 实例Setup串行执行，不占用连接线程
+    private final AtomicLong requestSequence = new AtomicLong();  // 服务器端请求号，用于日志和统计
+    private int setupParallelism = 1;
+    private boolean snapshotEnabled = true;
+    private File snapshotKeyFile = new File(SystemParameters.FilePaths.MASTER_STATE_KEY);
+    private SecretKeyCache keyCache = new SecretKeyCache(
+            SystemParameters.KeyCacheConfig.CAPACITY, SystemParameters.KeyCacheConfig.TTL_MILLIS);
+    private AdmissionController admission = new AdmissionController(
+            SystemParameters.AdmissionConfig.MAX_QUEUED_KEYGENS,
+            SystemParameters.AdmissionConfig.CLIENT_RATE_PER_SECOND,
+            SystemParameters.AdmissionConfig.CLIENT_BURST,
+            SystemParameters.AdmissionConfig.QUEUE_SLO_MILLIS);
+
+    // 统计信息（计数和各阶段延迟分位数）
+    private final KGCMetrics metrics = new KGCMetrics();
 
     // 日志记录
+    // keyGen日志由多个keyGen线程并发写入：DateTimeFormatter线程安全，PrintWriter按行加锁，
+    // 每秒最多刷新一次，避免每个密钥都在锁内落盘；关闭服务器时close会写出剩余内容
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final long LOG_FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
     private PrintWriter performanceLog;
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    private final AtomicLong lastLogFlush = new AtomicLong(System.nanoTime());
 
     public KGCServer(int port) {
         this.port = port;
-        this.executor = Executors.newFixedThreadPool(10); // 支持10个并发连接
+        int keyGenThreads = Runtime.getRuntime().availableProcessors();
+        this.keyGenExecutor = Executors.newFixedThreadPool(keyGenThreads, runnable -> {
+            Thread thread = new Thread(runnable, "kgc-keygen");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.keyGenScheduler = new FairKeyGenScheduler(keyGenExecutor, keyGenThreads);
+        this.instanceExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kgc-instance-setup");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -48,36 +86,72 @@ public class KGCServer {
         // 创建日志文件
         initializeLogging();
 
-        // 系统初始化（Setup阶段）
+        // 系统初始化：(n, m)未变时直接加载主状态快照，否则执行Setup阶段
         System.out.println(">>> Initializing WFIBE system...");
-        long setupStart = System.currentTimeMillis();
+        WFIBESystem system = snapshotEnabled ? loadSnapshot(vectorDim_n, vectorDim_m) : null;
 
-        system = new WFIBESystem();
-        WFIBESystem.SystemSetupResult setupResult =
-                system.setup(vectorDim_n, vectorDim_m, SystemParameters.PAIRING_PARAMS);
+        if (system == null) {
+            long setupStart = System.currentTimeMillis();
 
-        long setupEnd = System.currentTimeMillis();
+            system = new WFIBESystem();
+            system.setSetupParallelism(setupParallelism);
+            WFIBESystem.SystemSetupResult setupResult =
+                    system.setup(vectorDim_n, vectorDim_m, SystemParameters.PAIRING_PARAMS);
 
-        if (!setupResult.success) {
-            throw new Exception("System setup failed: " + setupResult.errorMessage);
-        }
+            long setupEnd = System.currentTimeMillis();
 
-        System.out.println("✓ System initialized successfully");
-        System.out.println("  Setup time: " + setupResult.setupTime + " ms");
-        System.out.println("  Public key size: " + setupResult.publicKeySize + " bytes");
-        System.out.println("  Master key size: " + setupResult.masterKeySize + " bytes");
+            if (!setupResult.success) {
+                throw new Exception("System setup failed: " + setupResult.errorMessage);
+            }
 
-        // 记录setup性能
-        logSetupPerformance(vectorDim_n, vectorDim_m, setupResult);
+            System.out.println("✓ System initialized successfully");
+            System.out.println("  Setup time: " + setupResult.setupTime + " ms" +
+                    " (" + setupResult.setupThreads + " threads)");
+            System.out.printf("    generators %d ms, matrices %d ms, mpk %d ms, keyGen tables %d ms\n",
+                    setupResult.generatorTime, setupResult.matrixTime,
+                    setupResult.mpkTime, setupResult.keyTableTime);
+            System.out.println("  Public key size: " + setupResult.publicKeySize + " bytes");
+            System.out.println("  Master key size: " + setupResult.masterKeySize + " bytes");
+            System.out.printf("  KeyGen table size: %.1f MB\n", setupResult.keyTableSize / 1048576.0);
+            System.out.printf("  Fixed-base tables: window=%d, %.1f MB\n",
+                    setupResult.fixedBaseWindow, setupResult.fixedBaseTableSize / 1048576.0);
+
+            // 记录setup性能
+            logSetupPerformance(vectorDim_n, vectorDim_m, setupResult);
+
+            if (snapshotEnabled) {
+                saveSnapshot(system);
+            }
+        }
+
+        instances.put(DEFAULT_INSTANCE, system);
 
         // 保存公共参数
-        savePublicParameters();
+        savePublicParameters(system, SystemParameters.FilePaths.PUBLIC_PARAMS_FILE);
 
         // 启动服务器监听
+        executor = createConnectionExecutor();
         serverSocket = new ServerSocket(port);
         running = true;
 
         System.out.println("\n>>> KGC Server listening on port " + port);
+        System.out.println(">>> Connection handling: " + connectionMode);
+
+        // 二进制协议前端与对象流端口并存，共用准入控制和keyGen线程池
+        if (binaryPort > 0) {
+            binaryServer = new BinaryProtocolServer(binaryPort, metrics,
+                    (request, clientAddress) ->
+                            submitKeyGen(request, requestSequence.incrementAndGet(), clientAddress));
+            binaryServer.start();
+            System.out.println(">>> Binary protocol (NIO) listening on port " + binaryPort);
+        }
+
+        // 实例管理命令只在本机回环地址上接受
+        if (adminPort > 0) {
+            startAdminListener();
+            System.out.println(">>> Instance admin listening on " +
+                    adminSocket.getInetAddress().getHostAddress() + ":" + adminPort + " (local only)");
+        }
         System.out.println(">>> Ready to process key requests\n");
 
         // 接受连接的主循环
@@ -86,8 +160,13 @@ public class KGCServer {
                 Socket clientSocket = serverSocket.accept();
                 clientSocket.setSoTimeout(SystemParameters.NetworkConfig.READ_TIMEOUT);
 
-                // 提交到线程池处理
-                executor.submit(() -> handleClient(clientSocket));
+                // 提交到线程池处理；连接队列已满时直接关闭
+                try {
+                    executor.execute(() -> handleClient(clientSocket));
+                } catch (RejectedExecutionException e) {
+                    admission.recordRejectedConnection();
+                    clientSocket.close();
+                }
 
             } catch (SocketTimeoutException e) {
                 // 超时继续
@@ -99,12 +178,83 @@ public class KGCServer {
         }
     }
 
+    /**
+     * 每个连接一个虚拟线程（需Java 21+），需在start之前调用
+     * 连接线程只做阻塞读写，keyGen始终在按核心数限定的线程池上执行，连接数不再受OS线程数限制
+     */
+    public void setVirtualThreadsEnabled(boolean enabled) {
+        this.virtualThreads = enabled;
+    }
+
+    /**
+     * 设置二进制协议端口，需在start之前调用；0表示不启用
+     */
+    public void setBinaryPort(int binaryPort) {
+        this.binaryPort = binaryPort;
+    }
+
+    /**
+     * 设置实例管理端口（只监听本机回环地址），需在start之前调用；0表示不启用
+     */
+    public void setAdminPort(int adminPort) {
+        this.adminPort = adminPort;
+    }
+
+    /**
+     * 当前的连接处理方式（start之后有效）
+     */
+    public String getConnectionMode() {
+        return connectionMode;
+    }
+
+    /**
+     * 设置Setup使用的线程数，需在start之前调用；0表示使用全部核心
+     */
+    public void setSetupParallelism(int threads) {
+        this.setupParallelism = threads;
+    }
+
+    /**
+     * 开关主状态快照（默认开启），需在start之前调用
+     */
+    public void setSnapshotEnabled(boolean enabled) {
+        this.snapshotEnabled = enabled;
+    }
+
+    /**
+     * 设置快照密钥文件的位置，需在start之前调用；应放在快照所在的数据目录之外
+     */
+    public void setSnapshotKeyFile(File keyFile) {
+        this.snapshotKeyFile = keyFile;
+    }
+
+    /**
+     * 开关已签发密钥的缓存和相同请求合并（默认开启），需在start之前调用
+     */
+    public void setKeyCacheEnabled(boolean enabled) {
+        this.keyCache = new SecretKeyCache(enabled ? SystemParameters.KeyCacheConfig.CAPACITY : 0,
+                SystemParameters.KeyCacheConfig.TTL_MILLIS);
+    }
+
+    /**
+     * 设置keyGen准入控制，需在start之前调用
+     * @param maxQueuedKeyGens    排队中的keyGen上限，超出时立即拒绝
+     * @param clientRatePerSecond 每个客户端地址每秒的请求数，0表示不限速
+     * @param clientBurst         每个客户端地址允许的突发请求数
+     * @param queueSloMillis      排队时间上限，超过的请求在计算前丢弃；0表示不限
+     */
+    public void setAdmissionControl(int maxQueuedKeyGens, double clientRatePerSecond,
+                                    int clientBurst, long queueSloMillis) {
+        this.admission = new AdmissionController(maxQueuedKeyGens, clientRatePerSecond,
+                clientBurst, queueSloMillis);
+    }
+
     /**
      * 处理客户端请求
      */
     private void handleClient(Socket clientSocket) {
         String clientAddress = clientSocket.getInetAddress().getHostAddress();
-        long requestId = System.currentTimeMillis();
+        long requestId = requestSequence.incrementAndGet();
 
         System.out.println("[" + requestId + "] Client connected: " + clientAddress);
 
@@ -115,64 +265,61 @@ public class KGCServer {
                         new BufferedOutputStream(clientSocket.getOutputStream()))
         ) {
             // 读取请求
-            KeyRequest request = (KeyRequest) in.readObject();
+            long requestStart = System.nanoTime();
+            Object message = in.readObject();
+            long decodeNanos = System.nanoTime() - requestStart;
+
+            // 实例管理命令只接受来自管理端口的连接
+            if (message instanceof InstanceCommand) {
+                System.err.println("[" + requestId + "] Rejected instance command from " + clientAddress);
+                InstanceCommandResult result = new InstanceCommandResult();
+                result.errorMessage = "Instance commands are only accepted on the local admin port";
+                out.writeObject(result);
+                out.flush();
+                return;
+            }
+
+            // 批量密钥请求
+            if (message instanceof BatchKeyRequest) {
+                handleBatch((BatchKeyRequest) message, requestId, clientAddress, out);
+                return;
+            }
+
+            KeyRequest request = (KeyRequest) message;
+            metrics.decode.record(decodeNanos);
 
             System.out.println("[" + requestId + "] Key request received:");
+            System.out.println("  Instance: " +
+                    (request.instanceId != null ? request.instanceId : DEFAULT_INSTANCE));
             System.out.println("  Attributes: " + request.attributes.size());
             System.out.println("  Policy size: " + request.policy.size());
 
-            // 生成密钥
-            long keyGenStart = System.nanoTime();
-
-            // 编码属性和策略
-            int[] attrVector = system.encodeAttributes(
-                    request.attributes, system.getVectorDim_m());
-            int[] policyVector = system.encodePolicy(
-                    request.policy, system.getVectorDim_n());
-
-            // 执行密钥生成
-            WFIBESystem.KeyGenResult keyResult = system.keyGen(attrVector, policyVector);
-
-            long keyGenEnd = System.nanoTime();
-            long keyGenTime = (keyGenEnd - keyGenStart) / 1_000_000; // ms
-
-            // 准备响应
-            KeyResponse response = new KeyResponse();
-            response.requestId = requestId;
-            response.success = keyResult.success;
-
-            if (keyResult.success) {
-                response.secretKey = keyResult.secretKey;
-                response.keyGenTime = keyGenTime;
-                response.keySize = keyResult.keySize;
+            // keyGen在计算线程池上执行，连接线程只阻塞等待结果
+            KeyResponse response = submitKeyGen(request, requestId, clientAddress).get();
 
+            if (response.retryAfterMs > 0) {
+                System.err.println("[" + requestId + "] Key request rejected: " +
+                        response.errorMessage + " (retry after " + response.retryAfterMs + " ms)");
+            } else if (response.success) {
                 System.out.println("[" + requestId + "] Key generated successfully:");
-                System.out.println("  Generation time: " + keyGenTime + " ms");
-                System.out.println("  Key size: " + keyResult.keySize + " bytes");
-
-                successfulRequests++;
+                System.out.println("  Generation time: " + response.keyGenTime + " ms");
+                System.out.println("  Key size: " + response.keySize + " bytes");
             } else {
-                response.errorMessage = keyResult.errorMessage;
                 System.err.println("[" + requestId + "] Key generation failed: " +
-                        keyResult.errorMessage);
-                failedRequests++;
+                        response.errorMessage);
             }
 
             // 发送响应
+            long serializeStart = System.nanoTime();
             out.writeObject(response);
             out.flush();
-
-            // 更新统计
-            totalRequests++;
-            totalKeyGenTime += keyGenTime;
-
-            // 记录性能数据
-            logKeyGenPerformance(requestId, request, keyResult, keyGenTime);
+            metrics.serialize.recordSince(serializeStart);
+            metrics.total.recordSince(requestStart);
 
         } catch (Exception e) {
             System.err.println("[" + requestId + "] Error handling client: " + e.getMessage());
             e.printStackTrace();
-            failedRequests++;
+            metrics.failedRequests.increment();
         } finally {
             try {
                 clientSocket.close();
@@ -182,12 +329,416 @@ public class KGCServer {
         }
     }
 
+    /**
+     * 创建连接处理线程池：虚拟线程模式下每个连接一个虚拟线程，否则为固定10线程的池
+     * 虚拟线程工厂通过反射获取，在Java 21以下运行时退回每连接一个平台线程
+     */
+    private ExecutorService createConnectionExecutor() {
+        if (!virtualThreads) {
+            connectionMode = "platform thread pool (10 threads)";
+            // 支持10个并发连接，排队的连接数有上限
+            return new ThreadPoolExecutor(10, 10, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(SystemParameters.AdmissionConfig.MAX_QUEUED_CONNECTIONS));
+        }
+
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            connectionMode = "virtual thread per connection";
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads require Java 21+, using a platform thread per connection");
+            connectionMode = "platform thread per connection";
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * 经准入控制后把keyGen放入该客户端的队列，由公平调度器轮转提交到计算线程池
+     * 限速和排队都按连接的远端地址计算（clientId由客户端自报，不可信）
+     * 被拒绝（限速、队列满、排队超过SLO）时返回带retryAfterMs的失败响应，不占用计算线程
+     */
+    private CompletableFuture<KeyResponse> submitKeyGen(KeyRequest request, long requestId,
+                                                        String clientAddress) {
+        AdmissionController.Ticket ticket = admission.admit(clientAddress);
+        if (!ticket.admitted) {
+            return CompletableFuture.completedFuture(rejectedResponse(request, requestId, ticket));
+        }
+        return enqueueKeyGen(request, requestId, clientAddress, ticket);
+    }
+
+    /**
+     * 已准入的keyGen放入该客户端的公平调度队列
+     */
+    private CompletableFuture<KeyResponse> enqueueKeyGen(KeyRequest request, long requestId,
+                                                         String clientAddress,
+                                                         AdmissionController.Ticket ticket) {
+        CompletableFuture<KeyResponse> future = new CompletableFuture<>();
+        keyGenScheduler.submit(clientAddress, () -> {
+            if (!admission.begin(ticket)) {
+                future.complete(rejectedResponse(request, requestId, ticket));
+            } else if (!future.isDone()) {  // 已取消的不再计算
+                try {
+                    future.complete(generateKey(request, requestId));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }, e -> {
+            admission.abandon(ticket);
+            future.completeExceptionally(e);
+        });
+        return future;
+    }
+
+    private KeyResponse rejectedResponse(KeyRequest request, long requestId,
+                                         AdmissionController.Ticket ticket) {
+        KeyResponse response = new KeyResponse();
+        response.requestId = requestId;
+        response.instanceId = request.instanceId != null ? request.instanceId : DEFAULT_INSTANCE;
+        response.success = false;
+        response.errorMessage = ticket.reason;
+        response.retryAfterMs = ticket.retryAfterMs;
+        return response;
+    }
+
+    /**
+     * 为单个请求生成密钥并更新统计和性能日志
+     */
+    private KeyResponse generateKey(KeyRequest request, long requestId) {
+        String instanceId = request.instanceId != null ? request.instanceId : DEFAULT_INSTANCE;
+
+        // 生成密钥
+        long keyGenStart = System.nanoTime();
+
+        WFIBESystem system = instances.get(instanceId);
+        WFIBESystem.KeyGenResult keyResult;
+
+        if (system == null) {
+            keyResult = new WFIBESystem.KeyGenResult();
+            keyResult.success = false;
+            keyResult.errorMessage = "Unknown system instance: " + instanceId;
+        } else {
+            // 编码属性和策略
+            SparseVector attrVector = system.encodeAttributes(
+                    request.attributes, system.getVectorDim_m());
+            SparseVector policyVector = system.encodePolicy(
+                    request.policy, system.getVectorDim_n());
+            long vectorsEncoded = System.nanoTime();
+            metrics.encodeVectors.record(vectorsEncoded - keyGenStart);
+
+            // 执行密钥生成（相同的编码向量命中缓存或合并到在途请求）
+            keyResult = keyCache.get(system, attrVector, policyVector,
+                    () -> system.keyGen(attrVector, policyVector));
+            metrics.keyGen.recordSince(vectorsEncoded);
+        }
+
+        long keyGenEnd = System.nanoTime();
+        long keyGenTime = (keyGenEnd - keyGenStart) / 1_000_000; // ms
+
+        // 准备响应
+        KeyResponse response = new KeyResponse();
+        response.requestId = requestId;
+        response.instanceId = instanceId;
+        response.success = keyResult.success;
+
+        if (keyResult.success) {
+            response.secretKey = keyResult.secretKey;
+            response.keyGenTime = keyGenTime;
+            response.keySize = keyResult.keySize;
+            metrics.successfulRequests.increment();
+        } else {
+            response.errorMessage = keyResult.errorMessage;
+            metrics.failedRequests.increment();
+        }
+
+        // 更新统计
+        metrics.totalRequests.increment();
+
+        // 记录性能数据
+        logKeyGenPerformance(requestId, request, keyResult, keyGenTime);
+
+        return response;
+    }
+
+    /**
+     * 处理批量密钥请求
+     * 整批一次准入（占一个令牌和全部排队名额），不受单客户端突发容量限制；不能准入时整批以index为-1的响应拒绝
+     * 各项经公平调度器分发到keyGen线程池并行计算，按完成顺序逐个写回；响应的index对应请求在批中的位置
+     */
+    private void handleBatch(BatchKeyRequest batch, long requestId, String clientAddress,
+                             ObjectOutputStream out)
+            throws IOException, InterruptedException {
+        int count = batch.requests.size();
+        System.out.println("[" + requestId + "] Batch key request received: " + count + " keys");
+
+        if (count > SystemParameters.NetworkConfig.MAX_BATCH_SIZE) {
+            KeyResponse rejected = new KeyResponse();
+            rejected.requestId = requestId;
+            rejected.index = -1;
+            rejected.errorMessage = "Batch too large: " + count + " > " +
+                    SystemParameters.NetworkConfig.MAX_BATCH_SIZE;
+            out.writeObject(rejected);
+            out.flush();
+            metrics.failedRequests.increment();
+            return;
+        }
+
+        AdmissionController.Ticket ticket = admission.admitBatch(clientAddress, count);
+        if (!ticket.admitted) {
+            KeyResponse rejected = new KeyResponse();
+            rejected.requestId = requestId;
+            rejected.index = -1;
+            rejected.errorMessage = ticket.reason;
+            rejected.retryAfterMs = ticket.retryAfterMs;
+            out.writeObject(rejected);
+            out.flush();
+            System.err.println("[" + requestId + "] Batch rejected: " + ticket.reason +
+                    " (retry after " + ticket.retryAfterMs + " ms)");
+            return;
+        }
+
+        long batchStart = System.nanoTime();
+        BlockingQueue<Object> completed = new LinkedBlockingQueue<>();
+        List<CompletableFuture<KeyResponse>> futures = new ArrayList<>(count);
+        int failed = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                KeyRequest request = batch.requests.get(i);
+                if (request.clientId == null) {
+                    request.clientId = batch.clientId;
+                }
+                final int index = i;
+                CompletableFuture<KeyResponse> future = enqueueKeyGen(request, requestId, clientAddress, ticket);
+                futures.add(future);
+                future.whenComplete((response, error) -> {
+                    if (error == null) {
+                        response.index = index;
+                        completed.add(response);
+                    } else if (!(error instanceof CancellationException)) {
+                        completed.add(error);
+                    }
+                });
+            }
+
+            for (int written = 0; written < count; written++) {
+                Object result = completed.take();
+                if (result instanceof Throwable) {
+                    // generateKey内部已捕获keyGen异常，这里只可能是编码等意外错误，整批中止
+                    Throwable cause = (Throwable) result;
+                    throw new IOException("Batch item failed: " + cause, cause);
+                }
+
+                KeyResponse response = (KeyResponse) result;
+                if (!response.success) {
+                    failed++;
+                }
+
+                long serializeStart = System.nanoTime();
+                out.writeObject(response);
+                out.flush();
+                // 每个响应相互独立，清空句柄表避免流内引用表随批大小增长
+                out.reset();
+                metrics.serialize.recordSince(serializeStart);
+            }
+        } finally {
+            // 客户端断开或出错时取消尚未开始的计算；已取消的项仍各自经begin归还排队名额
+            futures.forEach(f -> f.cancel(false));
+            admission.endBatch(ticket);
+        }
+
+        System.out.printf("[%d] Batch completed: %d keys (%d failed) in %d ms\n",
+                requestId, count, failed, (System.nanoTime() - batchStart) / 1_000_000);
+    }
+
+    /**
+     * 启动管理端口的接受线程，只绑定本机回环地址
+     */
+    private void startAdminListener() throws IOException {
+        adminSocket = new ServerSocket(adminPort, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (running) {
+                try {
+                    handleAdminClient(adminSocket.accept());
+                } catch (IOException e) {
+                    if (running) {
+                        System.err.println("Admin accept error: " + e.getMessage());
+                    }
+                }
+            }
+        }, "kgc-admin");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * 处理一条管理连接：CREATE交给实例执行器，Setup完成后再回复；RETIRE和LIST直接回复
+     */
+    private void handleAdminClient(Socket socket) {
+        try {
+            socket.setSoTimeout(SystemParameters.NetworkConfig.READ_TIMEOUT);
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            InstanceCommand command = (InstanceCommand) in.readObject();
+
+            if (command.action != InstanceCommand.CREATE) {
+                replyAdmin(socket, out, handleInstanceCommand(command));
+                return;
+            }
+            try {
+                instanceExecutor.execute(() -> replyAdmin(socket, out, handleInstanceCommand(command)));
+            } catch (RejectedExecutionException e) {
+                InstanceCommandResult result = new InstanceCommandResult();
+                result.errorMessage = "KGC is shutting down";
+                replyAdmin(socket, out, result);
+            }
+
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            System.err.println("Admin request failed: " + e.getMessage());
+            closeQuietly(socket);
+        }
+    }
+
+    private void replyAdmin(Socket socket, ObjectOutputStream out, InstanceCommandResult result) {
+        try {
+            out.writeObject(result);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Admin reply failed: " + e.getMessage());
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    /**
+     * 处理实例管理命令；CREATE只在实例执行器上调用
+     */
+    private InstanceCommandResult handleInstanceCommand(InstanceCommand command) {
+        InstanceCommandResult result = new InstanceCommandResult();
+
+        try {
+            switch (command.action) {
+                case InstanceCommand.CREATE:
+                    WFIBESystem.SystemSetupResult setupResult =
+                            setupInstance(command.instanceId, command.n, command.m);
+                    result.setupTime = setupResult.setupTime;
+                    result.publicParameters = instances.get(command.instanceId).getPublicParameters();
+                    break;
+                case InstanceCommand.RETIRE:
+                    retireInstance(command.instanceId);
+                    break;
+                case InstanceCommand.LIST:
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown instance action: " + command.action);
+            }
+            result.success = true;
+
+        } catch (Exception e) {
+            result.success = false;
+            result.errorMessage = e.getMessage();
+            System.err.println("Instance command failed: " + e.getMessage());
+        }
+
+        result.instances = describeInstances();
+        return result;
+    }
+
+    /**
+     * 创建新的系统实例，与默认实例共享配对；在实例执行器上执行并等待完成
+     * 公共参数写入 public_params_<id>.dat，同时随命令结果返回
+     */
+    public WFIBESystem.SystemSetupResult createInstance(String instanceId, int n, int m) {
+        try {
+            return instanceExecutor.submit(() -> setupInstance(instanceId, n, m)).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause :
+                    new IllegalStateException("Instance setup failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while creating instance " + instanceId);
+        }
+    }
+
+    /**
+     * 执行实例Setup；只在单线程的实例执行器上调用，数量检查与加入实例表之间不会有其他创建
+     */
+    private WFIBESystem.SystemSetupResult setupInstance(String instanceId, int n, int m) {
+        if (instanceId == null || !instanceId.matches("[A-Za-z0-9_.-]{1,64}")) {
+            throw new IllegalArgumentException("Invalid instance id: " + instanceId);
+        }
+        if (n < 64 || n > 8192 || m < 64 || m > 8192) {
+            throw new IllegalArgumentException("Vector dimension should be between 64 and 8192");
+        }
+        if (instances.containsKey(instanceId)) {
+            throw new IllegalStateException("Instance already exists: " + instanceId);
+        }
+        if (instances.size() >= SystemParameters.InstanceConfig.MAX_INSTANCES) {
+            throw new IllegalStateException("Instance limit reached: " +
+                    SystemParameters.InstanceConfig.MAX_INSTANCES + " live instances");
+        }
+
+        System.out.println(">>> Creating system instance '" + instanceId + "' (n=" + n + ", m=" + m + ")");
+
+        WFIBESystem system = new WFIBESystem();
+        system.setSetupParallelism(setupParallelism);
+        WFIBESystem.SystemSetupResult setupResult = system.setup(n, m,
+                SystemParameters.PAIRING_PARAMS, instances.get(DEFAULT_INSTANCE).getPairing());
+
+        if (!setupResult.success) {
+            throw new IllegalStateException("System setup failed: " + setupResult.errorMessage);
+        }
+        if (instances.putIfAbsent(instanceId, system) != null) {
+            throw new IllegalStateException("Instance already exists: " + instanceId);
+        }
+
+        System.out.println("✓ Instance '" + instanceId + "' ready, setup time: " +
+                setupResult.setupTime + " ms");
+        logSetupPerformance(n, m, setupResult);
+        savePublicParameters(system, "public_params_" + instanceId + ".dat");
+
+        return setupResult;
+    }
+
+    /**
+     * 退役系统实例，之后发往该实例的请求返回失败；默认实例不可退役
+     */
+    public void retireInstance(String instanceId) {
+        if (DEFAULT_INSTANCE.equals(instanceId)) {
+            throw new IllegalArgumentException("The default instance cannot be retired");
+        }
+        WFIBESystem retired = instances.remove(instanceId);
+        if (retired == null) {
+            throw new IllegalArgumentException("Unknown system instance: " + instanceId);
+        }
+        keyCache.invalidate(retired);
+        System.out.println("✓ Instance '" + instanceId + "' retired");
+    }
+
+    /**
+     * 当前实例列表，格式为 id -> "<n>x<m>"
+     */
+    private Map<String, String> describeInstances() {
+        Map<String, String> description = new TreeMap<>();
+        instances.forEach((id, system) ->
+                description.put(id, system.getVectorDim_n() + "x" + system.getVectorDim_m()));
+        return description;
+    }
+
     /**
      * 保存公共参数到文件
      */
-    private void savePublicParameters() {
+    private void savePublicParameters(WFIBESystem system, String fileName) {
         try {
-            File file = new File(SystemParameters.FilePaths.PUBLIC_PARAMS_FILE);
+            File file = new File(fileName);
 
             try (ObjectOutputStream oos = new ObjectOutputStream(
                     new FileOutputStream(file))) {
@@ -204,6 +755,49 @@ public class KGCServer {
         }
     }
 
+    /**
+     * 加载主状态快照，不存在、配置与本次Setup不一致或损坏时返回null
+     */
+    private WFIBESystem loadSnapshot(int n, int m) {
+        File file = new File(SystemParameters.FilePaths.MASTER_STATE_SNAPSHOT);
+        MasterStateSnapshot.Profile expected = MasterStateSnapshot.Profile.forSetup(
+                new WFIBESystem(), n, m, SystemParameters.PAIRING_PARAMS);
+
+        try {
+            long loadStart = System.nanoTime();
+            WFIBESystem loaded = MasterStateSnapshot.load(file, snapshotKeyFile, expected);
+
+            if (loaded != null) {
+                System.out.println("✓ Master state loaded from snapshot: " + file.getAbsolutePath());
+                System.out.println("  Load time: " + (System.nanoTime() - loadStart) / 1_000_000 + " ms");
+            }
+            return loaded;
+
+        } catch (IOException e) {
+            System.err.println("Failed to load master state snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 保存主状态快照
+     */
+    private void saveSnapshot(WFIBESystem system) {
+        try {
+            File file = new File(SystemParameters.FilePaths.MASTER_STATE_SNAPSHOT);
+            MasterStateSnapshot.save(system, file, snapshotKeyFile);
+
+            System.out.println("✓ Master state snapshot saved to: " + file.getAbsolutePath());
+            System.out.println("  Key file: " + snapshotKeyFile.getAbsolutePath());
+            if (file.getAbsoluteFile().getParentFile().equals(snapshotKeyFile.getAbsoluteFile().getParentFile())) {
+                System.err.println("Warning: snapshot key is stored in the same directory as the snapshot");
+            }
+
+        } catch (IOException e) {
+            System.err.println("Failed to save master state snapshot: " + e.getMessage());
+        }
+    }
+
     /**
      * 初始化日志记录
      */
@@ -248,7 +842,7 @@ public class KGCServer {
                 }
 
                 writer.printf("%s,%d,%d,%d,%d,%d\n",
-                        dateFormat.format(new Date()),
+                        DATE_FORMAT.format(LocalDateTime.now()),
                         n, m,
                         result.setupTime,
                         result.publicKeySize,
@@ -267,14 +861,19 @@ public class KGCServer {
                                       WFIBESystem.KeyGenResult result, long keyGenTime) {
         if (performanceLog != null) {
             performanceLog.printf("%s,%d,%d,%d,%d,%d,%b\n",
-                    dateFormat.format(new Date()),
+                    DATE_FORMAT.format(LocalDateTime.now()),
                     requestId,
                     request.attributes.size(),
                     request.policy.size(),
                     keyGenTime,
                     result.keySize,
                     result.success);
-            performanceLog.flush();
+
+            long now = System.nanoTime();
+            long last = lastLogFlush.get();
+            if (now - last >= LOG_FLUSH_INTERVAL_NANOS && lastLogFlush.compareAndSet(last, now)) {
+                performanceLog.flush();
+            }
         }
     }
 
@@ -285,17 +884,34 @@ public class KGCServer {
         System.out.println("\n=====================================");
         System.out.println("    KGC Server Statistics");
         System.out.println("=====================================");
-        System.out.println("Total requests: " + totalRequests);
-        System.out.println("Successful: " + successfulRequests);
-        System.out.println("Failed: " + failedRequests);
+        System.out.println("Total requests: " + metrics.totalRequests.sum());
+        System.out.println("Successful: " + metrics.successfulRequests.sum());
+        System.out.println("Failed: " + metrics.failedRequests.sum());
 
-        if (totalRequests > 0) {
-            double avgKeyGenTime = (double) totalKeyGenTime / totalRequests;
-            double successRate = (double) successfulRequests / totalRequests * 100;
-
-            System.out.printf("Average key generation time: %.2f ms\n", avgKeyGenTime);
-            System.out.printf("Success rate: %.2f%%\n", successRate);
+        if (metrics.totalRequests.sum() > 0) {
+            System.out.printf("Success rate: %.2f%%\n", metrics.getSuccessRate());
         }
+        System.out.println("Latency by stage:");
+        System.out.print(metrics.describeLatencies("  "));
+
+        System.out.println("Key cache: " + keyCache.size() + "/" + keyCache.getCapacity() + " entries");
+        System.out.println("  Hits: " + keyCache.getHits() +
+                ", misses: " + keyCache.getMisses() +
+                ", coalesced: " + keyCache.getCoalesced());
+        System.out.println("  Evictions: " + keyCache.getEvictions() +
+                ", expirations: " + keyCache.getExpirations());
+        System.out.printf("  Hit rate (incl. coalesced): %.2f%%\n", keyCache.getHitRate() * 100);
+
+        System.out.println("Admission: " + admission.getAdmitted() + " admitted, queue depth " +
+                admission.getQueueDepth() + " (peak " + admission.getPeakQueueDepth() +
+                ", limit " + admission.getMaxQueued() + "), " +
+                keyGenScheduler.getWaitingClients() + " clients waiting");
+        System.out.println("  Rejected: " + admission.getRejectedOverload() + " overload, " +
+                admission.getRejectedRateLimit() + " rate limit, " +
+                admission.getShed() + " over queue SLO (" + admission.getQueueSloMillis() + " ms), " +
+                admission.getRejectedBatches() + " concurrent batches, " +
+                admission.getRejectedConnections() + " connections");
+        System.out.println("  Queue wait: " + admission.getQueueWait().summary());
 
         System.out.println("=====================================\n");
     }
@@ -307,14 +923,26 @@ public class KGCServer {
         System.out.println("\n>>> Shutting down KGC server...");
 
         running = false;
-        executor.shutdown();
+        if (binaryServer != null) {
+            binaryServer.close();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+        keyGenExecutor.shutdownNow();
+        instanceExecutor.shutdownNow();
 
         try {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
             }
+            if (adminSocket != null && !adminSocket.isClosed()) {
+                adminSocket.close();
+            }
 
-            executor.awaitTermination(5, TimeUnit.SECONDS);
+            if (executor != null) {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            }
         } catch (Exception e) {
             System.err.println("Shutdown error: " + e.getMessage());
         }
@@ -335,16 +963,33 @@ public class KGCServer {
         sb.append("KGC Server Status:\n");
         sb.append("  Running: ").append(running).append("\n");
         sb.append("  Port: ").append(port).append("\n");
-        sb.append("  Total Requests: ").append(totalRequests).append("\n");
+        sb.append("  Connections: ").append(connectionMode).append("\n");
+        sb.append("  Binary Port: ").append(binaryPort > 0 ? String.valueOf(binaryPort) : "disabled").append("\n");
+        sb.append("  Admin Port: ").append(adminPort > 0 ? "127.0.0.1:" + adminPort : "disabled").append("\n");
+        sb.append("  Instances: ").append(describeInstances())
+                .append(" (max ").append(SystemParameters.InstanceConfig.MAX_INSTANCES).append(")\n");
+        sb.append("  Total Requests: ").append(metrics.totalRequests.sum()).append("\n");
         sb.append("  Success Rate: ");
 
-        if (totalRequests > 0) {
-            sb.append(String.format("%.2f%%",
-                    (double) successfulRequests / totalRequests * 100));
+        if (metrics.totalRequests.sum() > 0) {
+            sb.append(String.format("%.2f%%", metrics.getSuccessRate()));
         } else {
             sb.append("N/A");
         }
         sb.append("\n");
+        sb.append("  Latency:\n").append(metrics.describeLatencies("    "));
+        sb.append("  Key Cache: ").append(keyCache.size()).append(" entries, ")
+                .append(String.format("%.2f%% hit rate, %d coalesced",
+                        keyCache.getHitRate() * 100, keyCache.getCoalesced()))
+                .append("\n");
+        sb.append("  KeyGen Queue: ").append(admission.getQueueDepth()).append("/")
+                .append(admission.getMaxQueued())
+                .append(String.format(", wait p99 %.3f ms, %d rejected, %d shed",
+                        admission.getQueueWait().getPercentileNanos(99) / 1e6,
+                        admission.getRejectedOverload() + admission.getRejectedRateLimit() +
+                                admission.getRejectedBatches(),
+                        admission.getShed()))
+                .append("\n");
 
         return sb.toString();
     }
@@ -353,6 +998,26 @@ public class KGCServer {
      * 处理控制命令（用于远程控制）
      */
     public void handleCommand(String command) {
+        String[] parts = command.trim().split("\\s+");
+        try {
+            switch (parts[0].toUpperCase()) {
+                case "CREATE":   // CREATE <id> <n> <m>
+                    createInstance(parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+                    return;
+                case "RETIRE":   // RETIRE <id>
+                    retireInstance(parts[1]);
+                    return;
+                case "INSTANCES":
+                    System.out.println("Instances: " + describeInstances());
+                    return;
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Command failed: " + e.getMessage());
+            return;
+        }
+
         switch (command.toUpperCase()) {
             case "STATUS":
                 System.out.println(getStatus());
@@ -384,6 +1049,7 @@ class KeyRequest implements Serializable {
     public Set<String> attributes;
     public Map<String, Integer> policy;
     public String clientId;
+    public String instanceId;  // 为null时使用默认实例
     public long timestamp;
 
     public KeyRequest() {
@@ -413,14 +1079,75 @@ class KeyResponse implements Serializable {
     private static final long serialVersionUID = 1L;
 
     public long requestId;
+    public int index;          // 在批量请求中的位置，单个请求为0；-1表示整批被拒绝
+    public String instanceId;
     public boolean success;
     public WFIBESystem.SecretKey secretKey;
     public long keyGenTime;
     public int keySize;
     public String errorMessage;
+    public long retryAfterMs;  // 被准入控制拒绝时建议的重试等待（毫秒），0表示未被拒绝
     public long timestamp;
 
     public KeyResponse() {
         this.timestamp = System.currentTimeMillis();
     }
-}
\ No newline at end of file
+}
+
+/**
+ * 批量密钥请求：一次连接提交多组(属性, 策略)，服务器按完成顺序逐个返回KeyResponse
+ */
+class BatchKeyRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public List<KeyRequest> requests;
+    public String clientId;
+    public long timestamp;
+
+    public BatchKeyRequest() {
+        this.requests = new ArrayList<>();
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public BatchKeyRequest(List<KeyRequest> requests, String clientId) {
+        this.requests = requests;
+        this.clientId = clientId;
+        this.timestamp = System.currentTimeMillis();
+    }
+}
+
+/**
+ * 实例管理命令
+ */
+class InstanceCommand implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int CREATE = 1;
+    public static final int RETIRE = 2;
+    public static final int LIST = 3;
+
+    public int action;
+    public String instanceId;
+    public int n;
+    public int m;
+
+    public InstanceCommand(int action, String instanceId, int n, int m) {
+        this.action = action;
+        this.instanceId = instanceId;
+        this.n = n;
+        this.m = m;
+    }
+}
+
+/**
+ * 实例管理命令结果
+ */
+class InstanceCommandResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public boolean success;
+    public String errorMessage;
+    public long setupTime;
+    public WFIBESystem.PublicParameters publicParameters;  // 仅CREATE
+    public Map<String, String> instances;                   // 实例id -> "<n>x<m>"
+}
@@ -0,0 +1,232 @@
+package com.wfibe.network;
+
+import com.wfibe.crypto.*;
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于二进制协议的长连接KGC客户端
+ * 一条连接上可同时有多个未完成的请求：每个请求分配唯一的64位关联号，服务器按完成顺序乱序返回，
+ * 读线程按关联号完成对应的Future。线程安全；连接断开时该连接上未完成的请求以IOException失败，
+ * 下一个请求自动重连
+ */
+public class MultiplexedKGCClient implements Closeable {
+
+    private final String host;
+    private final int port;
+    private final String clientId;
+    private final AtomicLong nextCorrelationId = new AtomicLong();
+
+    // 以下字段由writeLock保护
+    private final Object writeLock = new Object();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(SystemParameters.NetworkConfig.BUFFER_SIZE);
+    private Connection connection;
+    private boolean closed;
+
+    public MultiplexedKGCClient(String host, int port, String clientId) {
+        this.host = host;
+        this.port = port;
+        this.clientId = clientId;
+    }
+
+    /**
+     * 发送密钥请求，不等待结果
+     * 调用方取消Future或以其他方式提前结束它（如orTimeout）时，请求从未完成表中移除，迟到的响应被丢弃
+     */
+    public CompletableFuture<WFIBESystem.KeyGenResult> requestKeyAsync(String instanceId,
+                                                                      Set<String> attributes,
+                                                                      Map<String, Integer> policy) {
+        KeyRequest request = new KeyRequest(attributes, policy, clientId);
+        request.instanceId = instanceId;
+
+        long correlationId = nextCorrelationId.incrementAndGet();
+        CompletableFuture<WFIBESystem.KeyGenResult> future = new CompletableFuture<>();
+
+        Connection current = null;
+        try {
+            synchronized (writeLock) {
+                current = connect();
+                Connection registered = current;
+                registered.pending.put(correlationId, future);
+                future.whenComplete((result, error) -> {
+                    if (error != null) {
+                        registered.pending.remove(correlationId, future);
+                    }
+                });
+
+                writeBuffer.clear();
+                BinaryKeyCodec.encodeRequest(request, correlationId, writeBuffer);
+                writeBuffer.flip();
+                while (writeBuffer.hasRemaining()) {
+                    current.channel.write(writeBuffer);
+                }
+            }
+            // 连接可能在登记之后、读线程清理之前断开
+            if (current.failed) {
+                current.pending.remove(correlationId);
+                future.completeExceptionally(new IOException("Connection to KGC lost"));
+            }
+        } catch (IOException e) {
+            if (current != null) {
+                current.fail(e);
+            }
+            future.completeExceptionally(e);
+        } catch (RuntimeException e) {
+            // 请求超出单帧大小等编码错误，不影响连接
+            if (current != null) {
+                current.pending.remove(correlationId);
+            }
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 请求单个密钥并等待结果
+     */
+    public WFIBESystem.KeyGenResult requestKey(String instanceId, Set<String> attributes,
+                                               Map<String, Integer> policy) throws IOException {
+        CompletableFuture<WFIBESystem.KeyGenResult> future = requestKeyAsync(instanceId, attributes, policy);
+        try {
+            return future.get(SystemParameters.NetworkConfig.READ_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause :
+                    new IOException("Key request failed", cause);
+        } catch (TimeoutException e) {
+            future.cancel(false);  // 从未完成表中移除
+            throw new SocketTimeoutException("No response from KGC within " +
+                    SystemParameters.NetworkConfig.READ_TIMEOUT + " ms");
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for KGC");
+        }
+    }
+
+    /**
+     * 当前连接上尚未收到响应的请求数
+     */
+    public int getPendingCount() {
+        synchronized (writeLock) {
+            return connection == null ? 0 : connection.pending.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        Connection current;
+        synchronized (writeLock) {
+            closed = true;
+            current = connection;
+            connection = null;
+        }
+        if (current != null) {
+            current.fail(new IOException("Client closed"));
+        }
+    }
+
+    /**
+     * 返回可用的连接，必要时重新建立；调用方持有writeLock
+     */
+    private Connection connect() throws IOException {
+        if (closed) {
+            throw new IOException("Client closed");
+        }
+        if (connection != null && !connection.failed) {
+            return connection;
+        }
+
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(new InetSocketAddress(host, port),
+                    SystemParameters.NetworkConfig.CONNECTION_TIMEOUT);
+            channel.socket().setTcpNoDelay(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        connection = new Connection(channel);
+        Thread reader = new Thread(connection::readLoop, "kgc-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+        return connection;
+    }
+
+    /**
+     * 一条物理连接及其未完成请求
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final Map<Long, CompletableFuture<WFIBESystem.KeyGenResult>> pending = new ConcurrentHashMap<>();
+        volatile boolean failed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * 读线程：解析响应帧，按关联号完成Future
+         */
+        void readLoop() {
+            ByteBuffer in = ByteBuffer.allocateDirect(SystemParameters.NetworkConfig.BUFFER_SIZE);
+            try {
+                while (true) {
+                    if (channel.read(in) < 0) {
+                        throw new EOFException("KGC closed the connection");
+                    }
+
+                    in.flip();
+                    while (BinaryKeyCodec.hasCompleteFrame(in)) {
+                        int frameEnd = in.position() + BinaryKeyCodec.LENGTH_FIELD + in.getInt();
+                        byte type = in.get();
+                        long correlationId = in.getLong();
+                        if (type != BinaryKeyCodec.TYPE_KEY_RESPONSE) {
+                            throw new ProtocolException("Unexpected frame type: " + type);
+                        }
+
+                        ByteBuffer payload = in.slice();
+                        payload.limit(frameEnd - in.position());
+                        KeyResponse response = BinaryKeyCodec.decodeResponse(payload);
+                        in.position(frameEnd);
+
+                        CompletableFuture<WFIBESystem.KeyGenResult> future = pending.remove(correlationId);
+                        if (future != null) {
+                            future.complete(KGCClient.toResult(response));
+                        }
+                    }
+                    in.compact();
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * 关闭连接，未完成的请求全部失败；可重复调用
+         */
+        void fail(Exception cause) {
+            failed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+
+            IOException error = cause instanceof IOException ? (IOException) cause :
+                    new IOException("Connection to KGC lost", cause);
+            for (Long correlationId : new ArrayList<>(pending.keySet())) {
+                CompletableFuture<WFIBESystem.KeyGenResult> future = pending.remove(correlationId);
+                if (future != null) {
+                    future.completeExceptionally(error);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.wfibe.network;
+
+import com.wfibe.crypto.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 已签发密钥的LRU缓存（带过期时间）
+ * 以(系统实例, 编码后的属性向量, 编码后的策略向量)为键，同一键的并发请求合并为一次keyGen
+ * 只缓存成功的结果；容量为0时直接计算，不缓存也不合并
+ */
+class SecretKeyCache {
+
+    private final int capacity;
+    private final long ttlMillis;
+
+    // 按访问顺序排列，最久未使用的在前；读写都在entries上同步
+    private final LinkedHashMap<Key, Entry> entries;
+    private final ConcurrentHashMap<Key, CompletableFuture<WFIBESystem.KeyGenResult>> inFlight =
+            new ConcurrentHashMap<>();
+
+    // 统计
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    SecretKeyCache(int capacity, long ttlMillis) {
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > SecretKeyCache.this.capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 返回缓存的密钥；未命中时若已有相同请求在计算则等待其结果，否则调用compute计算
+     */
+    WFIBESystem.KeyGenResult get(WFIBESystem system, SparseVector attributeVector,
+                                 SparseVector policyVector,
+                                 Supplier<WFIBESystem.KeyGenResult> compute) {
+        if (capacity <= 0) {
+            misses.incrementAndGet();
+            return compute.get();
+        }
+
+        Key key = new Key(system, attributeVector, policyVector);
+        WFIBESystem.KeyGenResult cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<WFIBESystem.KeyGenResult> future = new CompletableFuture<>();
+        CompletableFuture<WFIBESystem.KeyGenResult> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ?
+                        (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            // 查缓存与登记在途请求之间，上一个计算者可能已经写入缓存
+            WFIBESystem.KeyGenResult result = lookup(key);
+            if (result != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                result = compute.get();
+                if (result.success) {
+                    synchronized (entries) {
+                        entries.put(key, new Entry(result, System.currentTimeMillis() + ttlMillis));
+                    }
+                }
+            }
+            future.complete(result);
+            return result;
+
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 移除某个系统实例的全部缓存项（实例退役时调用）
+     */
+    void invalidate(WFIBESystem system) {
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.system == system);
+        }
+    }
+
+    private WFIBESystem.KeyGenResult lookup(Key key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                return null;
+            }
+            return entry.result;
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getCoalesced() {
+        return coalesced.get();
+    }
+
+    long getEvictions() {
+        return evictions.get();
+    }
+
+    long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * 未触发keyGen的请求占比（命中与合并都计入）
+     */
+    double getHitRate() {
+        long served = hits.get() + coalesced.get();
+        long total = served + misses.get();
+        return total > 0 ? (double) served / total : 0;
+    }
+
+    /**
+     * 缓存键：系统实例按引用比较，退役后同名重建的实例不会命中旧密钥
+     */
+    private static final class Key {
+        final WFIBESystem system;
+        final SparseVector attributeVector;
+        final SparseVector policyVector;
+        private final int hash;
+
+        Key(WFIBESystem system, SparseVector attributeVector, SparseVector policyVector) {
+            this.system = system;
+            this.attributeVector = attributeVector;
+            this.policyVector = policyVector;
+            this.hash = 31 * (31 * System.identityHashCode(system) + attributeVector.hashCode()) +
+                    policyVector.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return system == other.system &&
+                    attributeVector.equals(other.attributeVector) &&
+                    policyVector.equals(other.policyVector);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        final WFIBESystem.KeyGenResult result;
+        final long expiresAt;
+
+        Entry(WFIBESystem.KeyGenResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
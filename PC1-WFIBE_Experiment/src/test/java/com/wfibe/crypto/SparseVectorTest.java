@@ -0,0 +1,95 @@
+package com.wfibe.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * keyGen的稀疏内积 Σ_j B[j]·y_j + B[dim] 与稠密BigInteger参考实现对照
+ */
+class SparseVectorTest {
+
+    private static final BigInteger R = new BigInteger("730750818665451621361119245571504901405976559617");
+
+    private final ZrMontgomery zr = new ZrMontgomery(R);
+    private final Random random = new Random(13);
+
+    @Test
+    void sparseInnerProductMatchesDense() {
+        // 同一个临时向量跨多次调用复用，检查不依赖其初始内容
+        long[] k = zr.newVector(2);
+        for (int trial = 0; trial < 200; trial++) {
+            int dim = 1 + random.nextInt(64);
+            long[] row = randomRow(dim + 1);
+            int[] y = new int[dim];
+            for (int j = 0; j < dim; j++) {
+                y[j] = random.nextInt(3) == 0 ? random.nextInt(7) - 3 : 0;
+            }
+
+            WFIBESystem.innerProduct(zr, row, SparseVector.fromDense(y), dim, k);
+            assertEquals(denseInnerProduct(row, y), zr.get(k, 0), "trial " + trial);
+        }
+    }
+
+    @Test
+    void largeWeightsUseFullAdditionChain() {
+        int dim = 4;
+        long[] row = randomRow(dim + 1);
+        int[] y = {1000, -77, 0, Integer.MAX_VALUE};
+
+        long[] k = zr.newVector(2);
+        WFIBESystem.innerProduct(zr, row, SparseVector.fromDense(y), dim, k);
+
+        assertEquals(denseInnerProduct(row, y), zr.get(k, 0));
+    }
+
+    @Test
+    void emptyVectorGivesConstantCoordinate() {
+        int dim = 16;
+        long[] row = randomRow(dim + 1);
+
+        long[] k = zr.newVector(2);
+        WFIBESystem.innerProduct(zr, row, SparseVector.fromDense(new int[dim]), dim, k);
+
+        assertEquals(zr.get(row, dim), zr.get(k, 0));
+    }
+
+    @Test
+    void fromMapMatchesFromDense() {
+        // encodeAttributes/encodePolicy经fromMap构造，权重为0的项被丢弃
+        SortedMap<Integer, Integer> entries = new TreeMap<>();
+        entries.put(7, -2);
+        entries.put(1, 3);
+        entries.put(4, 0);
+        SparseVector vector = SparseVector.fromMap(10, entries);
+
+        assertEquals(2, vector.size());
+        assertEquals(1, vector.getIndex(0));
+        assertEquals(7, vector.getIndex(1));
+        assertEquals(SparseVector.fromDense(vector.toDense()), vector);
+
+        long[] row = randomRow(11);
+        long[] k = zr.newVector(2);
+        WFIBESystem.innerProduct(zr, row, vector, 10, k);
+        assertEquals(denseInnerProduct(row, vector.toDense()), zr.get(k, 0));
+    }
+
+    private BigInteger denseInnerProduct(long[] row, int[] y) {
+        BigInteger sum = zr.get(row, y.length);
+        for (int j = 0; j < y.length; j++) {
+            sum = sum.add(zr.get(row, j).multiply(BigInteger.valueOf(y[j])));
+        }
+        return sum.mod(R);
+    }
+
+    private long[] randomRow(int length) {
+        long[] row = zr.newVector(length);
+        for (int j = 0; j < length; j++) {
+            zr.set(row, j, new BigInteger(R.bitLength() + 16, random));
+        }
+        return row;
+    }
+}
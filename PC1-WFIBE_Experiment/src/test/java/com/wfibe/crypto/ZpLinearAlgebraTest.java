@@ -0,0 +1,130 @@
+package com.wfibe.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Gram-Schmidt正交化后各行两两正交，第一行不变
+ */
+class ZpLinearAlgebraTest {
+
+    private static final BigInteger R = new BigInteger("730750818665451621361119245571504901405976559617");
+
+    private final ZrMontgomery zr = new ZrMontgomery(R);
+    private final Random random = new Random(99);
+
+    @Test
+    void serialRowsAreOrthogonal() {
+        long[][] matrix = randomMatrix(6, 20);
+        long[] firstRow = matrix[0].clone();
+
+        new ZpLinearAlgebra(zr, null).orthogonalize(matrix);
+
+        assertArrayEquals(firstRow, matrix[0]);
+        assertOrthogonal(matrix);
+    }
+
+    @Test
+    void parallelRowsAreOrthogonal() {
+        // 列数超过并行分块大小，走分块并行路径
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            long[][] matrix = randomMatrix(4, 600);
+            new ZpLinearAlgebra(zr, pool).orthogonalize(matrix);
+            assertOrthogonal(matrix);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void matricesWithDifferentRowCountsAreOrthogonalizedTogether() {
+        long[][] a = randomMatrix(2, 16);
+        long[][] b = randomMatrix(5, 16);
+        long[][] c = randomMatrix(1, 16);
+        long[] single = c[0].clone();
+
+        new ZpLinearAlgebra(zr, null).orthogonalize(a, b, c);
+
+        assertOrthogonal(a);
+        assertOrthogonal(b);
+        assertArrayEquals(single, c[0]);
+    }
+
+    @Test
+    void matchesClassicalGramSchmidt() {
+        long[][] matrix = randomMatrix(3, 8);
+        BigInteger[][] expected = classical(matrix);
+
+        new ZpLinearAlgebra(zr, null).orthogonalize(matrix);
+
+        for (int i = 0; i < matrix.length; i++) {
+            for (int k = 0; k < expected[i].length; k++) {
+                assertEquals(expected[i][k], zr.get(matrix[i], k), "row " + i + " column " + k);
+            }
+        }
+    }
+
+    private void assertOrthogonal(long[][] matrix) {
+        long[] dot = zr.newVector(1);
+        int length = matrix[0].length / ZrMontgomery.LIMBS;
+        for (int i = 0; i < matrix.length; i++) {
+            zr.dot(matrix[i], matrix[i], 0, length, dot, 0);
+            assertFalse(zr.isZero(dot, 0), "row " + i + " degenerated");
+            for (int j = i + 1; j < matrix.length; j++) {
+                zr.dot(matrix[i], matrix[j], 0, length, dot, 0);
+                assertTrue(zr.isZero(dot, 0), "rows " + i + " and " + j + " are not orthogonal");
+            }
+        }
+    }
+
+    /**
+     * 经典Gram-Schmidt的BigInteger参考实现：v_i -= Σ_{j<i} <v_i, u_j>/<u_j, u_j> · u_j
+     */
+    private BigInteger[][] classical(long[][] matrix) {
+        int cols = matrix[0].length / ZrMontgomery.LIMBS;
+        BigInteger[][] rows = new BigInteger[matrix.length][cols];
+        for (int i = 0; i < matrix.length; i++) {
+            for (int k = 0; k < cols; k++) {
+                rows[i][k] = zr.get(matrix[i], k);
+            }
+        }
+
+        BigInteger[][] result = new BigInteger[matrix.length][];
+        for (int i = 0; i < rows.length; i++) {
+            BigInteger[] v = rows[i].clone();
+            for (int j = 0; j < i; j++) {
+                BigInteger factor = dot(rows[i], result[j]).multiply(dot(result[j], result[j]).modInverse(R)).mod(R);
+                for (int k = 0; k < cols; k++) {
+                    v[k] = v[k].subtract(factor.multiply(result[j][k])).mod(R);
+                }
+            }
+            result[i] = v;
+        }
+        return result;
+    }
+
+    private static BigInteger dot(BigInteger[] a, BigInteger[] b) {
+        BigInteger sum = BigInteger.ZERO;
+        for (int k = 0; k < a.length; k++) {
+            sum = sum.add(a[k].multiply(b[k]));
+        }
+        return sum.mod(R);
+    }
+
+    private long[][] randomMatrix(int rows, int cols) {
+        long[][] matrix = new long[rows][];
+        for (int i = 0; i < rows; i++) {
+            matrix[i] = zr.newVector(cols);
+            for (int k = 0; k < cols; k++) {
+                zr.set(matrix[i], k, new BigInteger(R.bitLength() + 16, random));
+            }
+        }
+        return matrix;
+    }
+}
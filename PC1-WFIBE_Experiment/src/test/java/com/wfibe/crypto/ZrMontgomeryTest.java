@@ -0,0 +1,196 @@
+package com.wfibe.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ZrMontgomery的运算与BigInteger逐一对照：随机值及0、1、p-1等边界值
+ */
+class ZrMontgomeryTest {
+
+    // Type A配对的群阶r（160位）
+    private static final BigInteger R = new BigInteger("730750818665451621361119245571504901405976559617");
+
+    private final Random random = new Random(2024);
+
+    @Test
+    void supportsOnlyOddModuliUpTo190Bits() {
+        assertTrue(ZrMontgomery.supports(R));
+        assertTrue(ZrMontgomery.supports(BigInteger.ONE.shiftLeft(190).subtract(BigInteger.ONE)));
+        assertFalse(ZrMontgomery.supports(BigInteger.ONE.shiftLeft(190).add(BigInteger.ONE)));
+        assertFalse(ZrMontgomery.supports(R.add(BigInteger.ONE)));
+        assertThrows(IllegalArgumentException.class, () -> new ZrMontgomery(BigInteger.valueOf(10)));
+    }
+
+    @Test
+    void setGetRoundTrip() {
+        for (BigInteger p : moduli()) {
+            ZrMontgomery zr = new ZrMontgomery(p);
+            long[] v = zr.newVector(1);
+            for (BigInteger x : values(p)) {
+                zr.set(v, 0, x);
+                assertEquals(x, zr.get(v, 0));
+            }
+
+            // 超出范围和负数按模约简
+            zr.set(v, 0, p.add(BigInteger.TEN));
+            assertEquals(BigInteger.TEN, zr.get(v, 0));
+            zr.set(v, 0, BigInteger.ONE.negate());
+            assertEquals(p.subtract(BigInteger.ONE), zr.get(v, 0));
+        }
+    }
+
+    @Test
+    void addSubMulMatchBigInteger() {
+        for (BigInteger p : moduli()) {
+            ZrMontgomery zr = new ZrMontgomery(p);
+            List<BigInteger> values = values(p);
+            long[] a = zr.newVector(1);
+            long[] b = zr.newVector(1);
+            long[] r = zr.newVector(1);
+
+            for (BigInteger x : values) {
+                for (BigInteger y : values) {
+                    zr.set(a, 0, x);
+                    zr.set(b, 0, y);
+
+                    zr.add(r, 0, a, 0, b, 0);
+                    assertEquals(x.add(y).mod(p), zr.get(r, 0), "add " + x + " " + y);
+                    zr.sub(r, 0, a, 0, b, 0);
+                    assertEquals(x.subtract(y).mod(p), zr.get(r, 0), "sub " + x + " " + y);
+                    zr.mul(r, 0, a, 0, b, 0);
+                    assertEquals(x.multiply(y).mod(p), zr.get(r, 0), "mul " + x + " " + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void resultMayAliasOperands() {
+        ZrMontgomery zr = new ZrMontgomery(R);
+        BigInteger x = randomBelow(R);
+        BigInteger y = randomBelow(R);
+        long[] v = zr.newVector(2);
+        zr.set(v, 0, x);
+        zr.set(v, 1, y);
+
+        zr.mul(v, 0, v, 0, v, 1);
+        assertEquals(x.multiply(y).mod(R), zr.get(v, 0));
+        zr.add(v, 1, v, 1, v, 1);
+        assertEquals(y.shiftLeft(1).mod(R), zr.get(v, 1));
+        zr.sub(v, 0, v, 0, v, 0);
+        assertTrue(zr.isZero(v, 0));
+    }
+
+    @Test
+    void dotMatchesBigInteger() {
+        ZrMontgomery zr = new ZrMontgomery(R);
+        int length = 50;
+        long[] a = zr.newVector(length);
+        long[] b = zr.newVector(length);
+        BigInteger expected = BigInteger.ZERO;
+        for (int k = 0; k < length; k++) {
+            BigInteger x = k == 0 ? R.subtract(BigInteger.ONE) : randomBelow(R);
+            BigInteger y = k == 0 ? R.subtract(BigInteger.ONE) : randomBelow(R);
+            zr.set(a, k, x);
+            zr.set(b, k, y);
+            if (k >= 10 && k < 40) {
+                expected = expected.add(x.multiply(y));
+            }
+        }
+
+        long[] dst = zr.newVector(1);
+        zr.dot(a, b, 10, 40, dst, 0);
+        assertEquals(expected.mod(R), zr.get(dst, 0));
+    }
+
+    @Test
+    void invertMatchesModInverse() {
+        for (BigInteger p : moduli()) {
+            ZrMontgomery zr = new ZrMontgomery(p);
+            long[] v = zr.newVector(1);
+            long[] inv = zr.newVector(1);
+            for (BigInteger x : values(p)) {
+                if (x.signum() == 0) {
+                    continue;
+                }
+                zr.set(v, 0, x);
+                zr.invert(inv, 0, v, 0);
+                assertEquals(x.modInverse(p), zr.get(inv, 0));
+            }
+
+            zr.set(v, 0, BigInteger.ZERO);
+            assertThrows(ArithmeticException.class, () -> zr.invert(inv, 0, v, 0));
+        }
+    }
+
+    @Test
+    void batchInvertMatchesModInverse() {
+        for (BigInteger p : moduli()) {
+            ZrMontgomery zr = new ZrMontgomery(p);
+            List<BigInteger> values = new ArrayList<>(values(p));
+            values.remove(BigInteger.ZERO);
+
+            // 多分配一个元素，检查count之外的元素不被修改
+            long[] v = zr.newVector(values.size() + 1);
+            for (int k = 0; k < values.size(); k++) {
+                zr.set(v, k, values.get(k));
+            }
+            zr.set(v, values.size(), BigInteger.TEN);
+
+            zr.batchInvert(v, values.size());
+            for (int k = 0; k < values.size(); k++) {
+                assertEquals(values.get(k).modInverse(p), zr.get(v, k), "inverse of " + values.get(k));
+            }
+            assertEquals(BigInteger.TEN, zr.get(v, values.size()));
+        }
+    }
+
+    @Test
+    void batchInvertRejectsZeroAndIgnoresEmpty() {
+        ZrMontgomery zr = new ZrMontgomery(R);
+        long[] v = zr.newVector(3);
+        zr.set(v, 0, BigInteger.ONE);
+        zr.set(v, 2, BigInteger.TWO);
+
+        long[] before = v.clone();
+        zr.batchInvert(v, 0);
+        assertArrayEquals(before, v);
+
+        assertThrows(ArithmeticException.class, () -> zr.batchInvert(v, 3));
+    }
+
+    /**
+     * 群阶r，以及一个190位的素数（可表示的最大位数）
+     */
+    private List<BigInteger> moduli() {
+        return Arrays.asList(R, BigInteger.probablePrime(190, random));
+    }
+
+    /**
+     * 边界值0、1、2、p-2、p-1、2^64附近，加上随机值
+     */
+    private List<BigInteger> values(BigInteger p) {
+        List<BigInteger> values = new ArrayList<>(Arrays.asList(
+                BigInteger.ZERO, BigInteger.ONE, BigInteger.TWO,
+                p.subtract(BigInteger.TWO), p.subtract(BigInteger.ONE),
+                BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE), BigInteger.ONE.shiftLeft(64),
+                BigInteger.ONE.shiftLeft(128)));
+        for (int k = 0; k < 20; k++) {
+            values.add(randomBelow(p));
+        }
+        return values;
+    }
+
+    private BigInteger randomBelow(BigInteger p) {
+        BigInteger x;
+        do {
+            x = new BigInteger(p.bitLength(), random);
+        } while (x.compareTo(p) >= 0);
+        return x;
+    }
+}
@@ -0,0 +1,237 @@
+package com.wfibe.network;
+
+import com.wfibe.crypto.*;
+import org.junit.jupiter.api.Test;
+
+import java.net.ProtocolException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BinaryKeyCodec的请求/响应往返，以及超长帧和截断帧的处理
+ */
+class BinaryKeyCodecTest {
+
+    @Test
+    void requestRoundTrip() throws ProtocolException {
+        KeyRequest request = new KeyRequest();
+        request.instanceId = "instance-2";
+        request.clientId = "receiver-属性";
+        request.attributes.addAll(Arrays.asList("doctor", "cardiology", "level3"));
+        request.policy.put("doctor", 2);
+        request.policy.put("nurse", -1);
+
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryKeyCodec.MAX_FRAME);
+        int frameLength = BinaryKeyCodec.encodeRequest(request, 42L, buffer);
+        buffer.flip();
+
+        assertEquals(buffer.remaining(), frameLength);
+        assertTrue(BinaryKeyCodec.hasCompleteFrame(buffer));
+        assertEquals(frameLength - BinaryKeyCodec.LENGTH_FIELD, buffer.getInt());
+        assertEquals(BinaryKeyCodec.TYPE_KEY_REQUEST, buffer.get());
+        assertEquals(42L, buffer.getLong());
+
+        KeyRequest decoded = BinaryKeyCodec.decodeRequest(buffer);
+        assertEquals(request.instanceId, decoded.instanceId);
+        assertEquals(request.clientId, decoded.clientId);
+        assertEquals(request.attributes, decoded.attributes);
+        assertEquals(request.policy, decoded.policy);
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    void requestWithNullInstanceAndEmptySets() throws ProtocolException {
+        KeyRequest request = new KeyRequest();
+        request.clientId = "c";
+
+        KeyRequest decoded = BinaryKeyCodec.decodeRequest(payload(encode(request, 1L)));
+
+        assertNull(decoded.instanceId);
+        assertEquals("c", decoded.clientId);
+        assertTrue(decoded.attributes.isEmpty());
+        assertTrue(decoded.policy.isEmpty());
+    }
+
+    @Test
+    void nullAttributeOrPolicyKeyIsRejected() {
+        // null标记只允许用于实例id和客户端id
+        KeyRequest nullAttribute = new KeyRequest();
+        nullAttribute.clientId = "c";
+        nullAttribute.attributes.add("a1");
+        nullAttribute.attributes.add(null);
+        ByteBuffer attributeFrame = payload(encode(nullAttribute, 1L));
+        assertThrows(ProtocolException.class, () -> BinaryKeyCodec.decodeRequest(attributeFrame));
+
+        KeyRequest nullPolicyKey = new KeyRequest();
+        nullPolicyKey.clientId = "c";
+        nullPolicyKey.policy.put(null, 2);
+        ByteBuffer policyFrame = payload(encode(nullPolicyKey, 2L));
+        assertThrows(ProtocolException.class, () -> BinaryKeyCodec.decodeRequest(policyFrame));
+    }
+
+    @Test
+    void successResponseRoundTrip() {
+        WFIBESystem.SecretKey key = new WFIBESystem.SecretKey();
+        key.sk_PA_1 = bytes(128, 1);
+        key.sk_PA_2 = bytes(128, 2);
+        key.sk_SB_1 = bytes(0, 3);
+        key.sk_SB_2 = bytes(300, 4);
+
+        KeyResponse response = new KeyResponse();
+        response.success = true;
+        response.instanceId = "default";
+        response.keyGenTime = 123456789L;
+        response.keySize = 556;
+        response.secretKey = key;
+
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryKeyCodec.MAX_FRAME);
+        BinaryKeyCodec.encodeResponse(response, 7L, buffer);
+        buffer.flip();
+        buffer.position(BinaryKeyCodec.LENGTH_FIELD);
+        assertEquals(BinaryKeyCodec.TYPE_KEY_RESPONSE, buffer.get());
+        assertEquals(7L, buffer.getLong());
+
+        KeyResponse decoded = BinaryKeyCodec.decodeResponse(buffer);
+        assertTrue(decoded.success);
+        assertEquals("default", decoded.instanceId);
+        assertEquals(123456789L, decoded.keyGenTime);
+        assertEquals(556, decoded.keySize);
+        assertArrayEquals(key.sk_PA_1, decoded.secretKey.sk_PA_1);
+        assertArrayEquals(key.sk_PA_2, decoded.secretKey.sk_PA_2);
+        assertArrayEquals(key.sk_SB_1, decoded.secretKey.sk_SB_1);
+        assertArrayEquals(key.sk_SB_2, decoded.secretKey.sk_SB_2);
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    void failureResponseRoundTrip() {
+        KeyResponse response = new KeyResponse();
+        response.success = false;
+        response.instanceId = "instance-1";
+        response.errorMessage = "KGC overloaded";
+        response.retryAfterMs = 250L;
+
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryKeyCodec.MAX_FRAME);
+        BinaryKeyCodec.encodeResponse(response, 9L, buffer);
+        buffer.flip();
+
+        KeyResponse decoded = BinaryKeyCodec.decodeResponse(payload(buffer));
+        assertFalse(decoded.success);
+        assertEquals("instance-1", decoded.instanceId);
+        assertEquals("KGC overloaded", decoded.errorMessage);
+        assertEquals(250L, decoded.retryAfterMs);
+        assertNull(decoded.secretKey);
+    }
+
+    @Test
+    void directBufferDecoding() throws ProtocolException {
+        KeyRequest request = new KeyRequest();
+        request.clientId = "direct";
+        request.attributes.add("a1");
+
+        ByteBuffer heap = encode(request, 3L);
+        ByteBuffer direct = ByteBuffer.allocateDirect(heap.remaining());
+        direct.put(heap).flip();
+
+        KeyRequest decoded = BinaryKeyCodec.decodeRequest(payload(direct));
+        assertEquals("direct", decoded.clientId);
+        assertEquals(Collections.singleton("a1"), decoded.attributes);
+    }
+
+    @Test
+    void oversizedFrameIsRejected() {
+        // 编码超出缓冲区时抛出BufferOverflowException，由调用方按帧过大处理
+        KeyResponse response = new KeyResponse();
+        response.success = true;
+        response.secretKey = new WFIBESystem.SecretKey();
+        response.secretKey.sk_PA_1 = bytes(BinaryKeyCodec.MAX_FRAME, 5);
+        response.secretKey.sk_PA_2 = new byte[0];
+        response.secretKey.sk_SB_1 = new byte[0];
+        response.secretKey.sk_SB_2 = new byte[0];
+        assertThrows(BufferOverflowException.class,
+                () -> BinaryKeyCodec.encodeResponse(response, 1L, ByteBuffer.allocate(BinaryKeyCodec.MAX_FRAME)));
+
+        // 对端声明的长度超过上限或小于帧头
+        for (int length : new int[]{BinaryKeyCodec.MAX_FRAME, Integer.MAX_VALUE, -1, 0, 8}) {
+            ByteBuffer in = ByteBuffer.allocate(BinaryKeyCodec.HEADER_LENGTH);
+            in.putInt(length).flip();
+            assertThrows(ProtocolException.class, () -> BinaryKeyCodec.hasCompleteFrame(in), "length " + length);
+        }
+    }
+
+    @Test
+    void oversizedStringIsRejected() {
+        KeyRequest request = new KeyRequest();
+        request.clientId = new String(new char[0xFFFF]).replace('\0', 'x');
+
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryKeyCodec.encodeRequest(request, 1L, ByteBuffer.allocate(BinaryKeyCodec.MAX_FRAME * 2)));
+    }
+
+    @Test
+    void truncatedFrameIsIncomplete() throws ProtocolException {
+        KeyRequest request = new KeyRequest();
+        request.clientId = "client";
+        request.attributes.add("attr");
+        ByteBuffer frame = encode(request, 5L);
+        int frameLength = frame.remaining();
+
+        for (int length = 0; length < frameLength; length++) {
+            ByteBuffer prefix = frame.duplicate();
+            prefix.limit(length);
+            assertFalse(BinaryKeyCodec.hasCompleteFrame(prefix), "prefix " + length);
+        }
+        assertTrue(BinaryKeyCodec.hasCompleteFrame(frame.duplicate()));
+    }
+
+    @Test
+    void truncatedPayloadFailsToDecode() {
+        KeyRequest request = new KeyRequest();
+        request.instanceId = "instance-3";
+        request.clientId = "client";
+        request.attributes.addAll(Arrays.asList("a", "b"));
+        request.policy.put("a", 1);
+        ByteBuffer payload = payload(encode(request, 5L));
+
+        for (int length = 0; length < payload.remaining(); length++) {
+            ByteBuffer truncated = payload.duplicate();
+            truncated.limit(truncated.position() + length);
+            assertThrows(BufferUnderflowException.class,
+                    () -> BinaryKeyCodec.decodeRequest(truncated), "payload prefix " + length);
+        }
+    }
+
+    @Test
+    void forgedCountFailsToDecode() {
+        // 伪造的超大属性数不应导致大块预分配
+        ByteBuffer payload = ByteBuffer.allocate(16);
+        payload.putShort((short) 0xFFFF).putShort((short) 0xFFFF).putInt(Integer.MAX_VALUE).flip();
+
+        assertThrows(BufferUnderflowException.class, () -> BinaryKeyCodec.decodeRequest(payload));
+    }
+
+    private static ByteBuffer encode(KeyRequest request, long requestId) {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryKeyCodec.MAX_FRAME);
+        BinaryKeyCodec.encodeRequest(request, requestId, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 跳过帧头，定位到载荷
+     */
+    private static ByteBuffer payload(ByteBuffer frame) {
+        frame.position(frame.position() + BinaryKeyCodec.HEADER_LENGTH);
+        return frame;
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,127 @@
+package com.wfibe.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LatencyHistogram的分桶与分位数误差界：报告值不小于真实值，且相对误差不超过1/64
+ */
+class LatencyHistogramTest {
+
+    private final Random random = new Random(11);
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertEquals(0, histogram.getPercentileNanos(99.9));
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0.0, histogram.getMeanNanos());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        for (long value = 0; value < 64; value++) {
+            assertEquals(value, LatencyHistogram.bucketIndex(value));
+            assertEquals(value, LatencyHistogram.bucketUpperBound((int) value));
+        }
+    }
+
+    @Test
+    void bucketsAreMonotonic() {
+        long previousBound = -1;
+        for (int index = 0; index <= LatencyHistogram.bucketIndex(Long.MAX_VALUE); index++) {
+            long bound = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(bound > previousBound, "bucket " + index);
+            // 上界本身和下一个值分别落在本桶和下一桶
+            assertEquals(index, LatencyHistogram.bucketIndex(bound));
+            if (bound < Long.MAX_VALUE) {
+                assertEquals(index + 1, LatencyHistogram.bucketIndex(bound + 1));
+            }
+            previousBound = bound;
+        }
+        assertEquals(Long.MAX_VALUE, previousBound);
+    }
+
+    @Test
+    void bucketContainsValueWithinRelativeError() {
+        for (int trial = 0; trial < 100000; trial++) {
+            long value = logUniform();
+            long bound = LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(value));
+
+            assertTrue(bound >= value, "upper bound below " + value);
+            assertTrue(bound - value <= value / 64, "bucket too wide for " + value);
+        }
+    }
+
+    @Test
+    void percentilesAreBoundedByTrueValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[20000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = logUniform();
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMaxNanos());
+
+        for (double percentile : new double[]{0, 1, 25, 50, 90, 99, 99.9, 99.99, 100}) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * values.length));
+            long expected = values[(int) rank - 1];
+            long reported = histogram.getPercentileNanos(percentile);
+
+            assertTrue(reported >= expected, "p" + percentile + " " + reported + " < " + expected);
+            assertTrue(reported - expected <= expected / 64, "p" + percentile + " " + reported + " vs " + expected);
+            assertTrue(reported <= histogram.getMaxNanos(), "p" + percentile + " above max");
+        }
+        assertEquals(histogram.getMaxNanos(), histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    void negativeDurationsCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(10);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertEquals(10, histogram.getPercentileNanos(100));
+        assertEquals(5.0, histogram.getMeanNanos());
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long value = 1000L * (t + 1);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    histogram.record(value);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, histogram.getCount());
+        assertEquals(4000, histogram.getMaxNanos());
+        assertEquals(2500.0, histogram.getMeanNanos());
+    }
+
+    /**
+     * 在1ns到约1000s之间按对数均匀取值，覆盖各个2的幂区间
+     */
+    private long logUniform() {
+        return (long) Math.pow(10, random.nextDouble() * 12);
+    }
+}
@@ -0,0 +1,187 @@
+package com.wfibe.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 分块认证对称层（DEM）
+ * 每个分块独立做AES-GCM，可在多核上并行加密/解密
+ *
+ * 格式：块大小(4) | 块数(4) | 明文长度(8) | 各块密文（含16字节标签）
+ * 每块的附加认证数据为格式头和块序号，块的重排、截断或篡改都会导致认证失败
+ */
+public class ChunkedDEM {
+
+    private static final int HEADER_LENGTH = 16;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+
+    private static final byte[] KEY_LABEL = "WFIBE-DEM-KEY".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NONCE_LABEL = "WFIBE-DEM-NONCE".getBytes(StandardCharsets.US_ASCII);
+
+    // 线程私有的摘要实例；GCM加密器仍按块创建（块足够大，创建开销可忽略，
+    // 且复用同一Cipher会受JCE对重复key/nonce的检查影响）
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    /**
+     * 并行加密
+     * 会话密钥每条消息都是新的（r1、r2随机），因此块nonce可以由会话密钥和块序号确定性导出
+     */
+    public static byte[] encrypt(byte[] sessionKey, byte[] plaintext, int chunkSize,
+                                 ExecutorService executor) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+
+        int chunkCount = chunkCount(plaintext.length, chunkSize);
+        byte[] output = new byte[HEADER_LENGTH + plaintext.length + chunkCount * TAG_LENGTH];
+        byte[] header = writeHeader(output, chunkSize, chunkCount, plaintext.length);
+
+        byte[] key = deriveKey(sessionKey);
+        byte[] noncePrefix = deriveNoncePrefix(sessionKey);
+
+        try {
+            runChunks(chunkCount, executor, i -> {
+                int offset = i * chunkSize;
+                int length = Math.min(chunkSize, plaintext.length - offset);
+                Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, key, noncePrefix, header, i);
+                cipher.doFinal(plaintext, offset, length,
+                        output, HEADER_LENGTH + offset + i * TAG_LENGTH);
+            });
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Chunked encryption failed", e);
+        }
+
+        return output;
+    }
+
+    /**
+     * 并行解密，任一块认证失败时抛出AEADBadTagException
+     */
+    public static byte[] decrypt(byte[] sessionKey, byte[] ciphertext,
+                                 ExecutorService executor) throws GeneralSecurityException {
+        if (ciphertext.length < HEADER_LENGTH) {
+            throw new GeneralSecurityException("Chunked ciphertext too short");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(ciphertext, 0, HEADER_LENGTH);
+        int chunkSize = buffer.getInt();
+        int chunkCount = buffer.getInt();
+        long plaintextLength = buffer.getLong();
+
+        if (chunkSize <= 0 || plaintextLength < 0 || plaintextLength > Integer.MAX_VALUE ||
+                chunkCount != chunkCount((int) plaintextLength, chunkSize) ||
+                ciphertext.length != HEADER_LENGTH + plaintextLength + (long) chunkCount * TAG_LENGTH) {
+            throw new GeneralSecurityException("Malformed chunked ciphertext header");
+        }
+
+        byte[] header = Arrays.copyOf(ciphertext, HEADER_LENGTH);
+        byte[] plaintext = new byte[(int) plaintextLength];
+        byte[] key = deriveKey(sessionKey);
+        byte[] noncePrefix = deriveNoncePrefix(sessionKey);
+
+        runChunks(chunkCount, executor, i -> {
+            int offset = i * chunkSize;
+            int length = Math.min(chunkSize, plaintext.length - offset);
+            Cipher cipher = newCipher(Cipher.DECRYPT_MODE, key, noncePrefix, header, i);
+            cipher.doFinal(ciphertext, HEADER_LENGTH + offset + i * TAG_LENGTH,
+                    length + TAG_LENGTH, plaintext, offset);
+        });
+
+        return plaintext;
+    }
+
+    private static int chunkCount(int length, int chunkSize) {
+        // 空消息也保留一个块，保证格式头始终被认证
+        return Math.max(1, (int) ((length + (long) chunkSize - 1) / chunkSize));
+    }
+
+    private static byte[] writeHeader(byte[] output, int chunkSize, int chunkCount, long length) {
+        ByteBuffer.wrap(output, 0, HEADER_LENGTH)
+                .putInt(chunkSize)
+                .putInt(chunkCount)
+                .putLong(length);
+        return Arrays.copyOf(output, HEADER_LENGTH);
+    }
+
+    private static Cipher newCipher(int mode, byte[] key, byte[] noncePrefix,
+                                    byte[] header, int index) throws GeneralSecurityException {
+        byte[] nonce = ByteBuffer.allocate(NONCE_LENGTH)
+                .put(noncePrefix, 0, NONCE_LENGTH - 8)
+                .putLong(index)
+                .array();
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, new SecretKeySpec(key, "AES"), new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+        cipher.updateAAD(header);
+        cipher.updateAAD(ByteBuffer.allocate(8).putLong(index).array());
+        return cipher;
+    }
+
+    private static byte[] deriveKey(byte[] sessionKey) {
+        return hash(KEY_LABEL, sessionKey);
+    }
+
+    private static byte[] deriveNoncePrefix(byte[] sessionKey) {
+        return hash(NONCE_LABEL, sessionKey);
+    }
+
+    private static byte[] hash(byte[] label, byte[] sessionKey) {
+        MessageDigest md = SHA256.get();
+        md.update(label);
+        md.update(sessionKey);
+        return md.digest();
+    }
+
+    private interface ChunkTask {
+        void run(int index) throws GeneralSecurityException;
+    }
+
+    /**
+     * 将各块分发到执行器，最后一块在调用线程执行
+     */
+    private static void runChunks(int chunkCount, ExecutorService executor, ChunkTask task)
+            throws GeneralSecurityException {
+        List<Future<?>> futures = new ArrayList<>(chunkCount - 1);
+        try {
+            for (int i = 0; i < chunkCount - 1; i++) {
+                final int index = i;
+                futures.add(executor.submit(() -> {
+                    task.run(index);
+                    return null;
+                }));
+            }
+            task.run(chunkCount - 1);
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            // ForkJoinPool把任务中的受检异常包装为RuntimeException，需沿cause链查找认证失败
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof GeneralSecurityException) {
+                    throw (GeneralSecurityException) cause;
+                }
+            }
+            throw new RuntimeException("Chunk processing failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Chunk processing interrupted", e);
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+    }
+}
@@ -2,72 +2,110 @@ package com.wfibe.crypto;
 
 import it.unisa.dia.gas.jpbc.*;
 import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 import javax.crypto.spec.IvParameterSpec;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * WFIBE加密系统 - 发送方使用
  * 在PC2上运行，只需要公共参数即可加密
+ *
+ * 线程安全：公共参数在初始化后整体以不可变对象发布；Cipher、MessageDigest和随机数发生器
+ * 按线程复用；统计使用LongAdder。同一实例可由多个线程并发加密
  */
 public class EncryptionSystem implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    // 系统公共参数
-    private transient Pairing pairing;
-    private transient Field G1, G2, GT, Zp;
-    private transient Element g1, g2, Z;
-    private int n, m;
+    // 系统公共参数及预计算表（不可变，重新初始化时整体替换）
+    private transient volatile PublicState state;
 
-    // 主公钥
-    private transient Element[][] mpk1_h;
-    private transient Element[][] mpk2_h;
+    private volatile long precomputationBudget = SystemParameters.PrecomputationConfig.DEFAULT_MEMORY_BUDGET;
+    private volatile boolean precomputationEnabled = true;
 
-    // 性能监控
-    private long totalEncryptionTime = 0;
-    private int encryptionCount = 0;
+    // 已编译的发送方配置（LRU）；被淘汰的配置同时停止其密文头池并归还固定基表占用的预算
+    private final Map<ProfileKey, EncryptionProfile> profileCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ProfileKey, EncryptionProfile> eldest) {
+            if (size() <= SystemParameters.PrecomputationConfig.PROFILE_CACHE_SIZE) {
+                return false;
+            }
+            stopHeaderPool(eldest.getValue());
+            eldest.getValue().releaseTables();
+            return true;
+        }
+    };
+    private final LongAdder profileCacheHits = new LongAdder();
+    private final LongAdder profileCacheMisses = new LongAdder();
+
+    // 已启动密文头池的配置
+    private final List<EncryptionProfile> headerPools = new ArrayList<>();
+
+    // 批量加密执行器（默认按核数创建ForkJoinPool）
+    private transient ExecutorService batchExecutor;
+
+    // 分块DEM：达到阈值的消息改用并行AES-GCM，执行器与批量加密分开，避免嵌套等待
+    private volatile int chunkedDemThreshold = SystemParameters.DemConfig.DEFAULT_CHUNKED_THRESHOLD;
+    private transient ExecutorService demExecutor;
+
+    // 性能监控（多线程并发累加）
+    private final LongAdder totalEncryptionTime = new LongAdder();
+    private final LongAdder encryptionCount = new LongAdder();
+
+    // 线程私有的加密上下文，避免每次调用重新创建Cipher/MessageDigest/SecureRandom
+    private static final ThreadLocal<CryptoContext> CONTEXT = ThreadLocal.withInitial(CryptoContext::new);
 
     /**
      * 从公共参数初始化加密系统
      */
     public void initializeFromPublicParams(WFIBESystem.PublicParameters params) {
-        this.n = params.n;
-        this.m = params.m;
-
-        // 初始化配对
-        this.pairing = PairingFactory.getPairing(params.pairingParams);
-        this.G1 = pairing.getG1();
-        this.G2 = pairing.getG2();
-        this.GT = pairing.getGT();
-        this.Zp = pairing.getZr();
-
-        // 恢复群元素
-        this.g1 = G1.newElementFromBytes(params.g1_bytes).getImmutable();
-        this.g2 = G2.newElementFromBytes(params.g2_bytes).getImmutable();
-        this.Z = Zp.newElementFromBytes(params.Z_bytes).getImmutable();
-
-        // 恢复主公钥
-        this.mpk1_h = new Element[2][n + 1];
-        for (int i = 0; i < 2; i++) {
-            for (int j = 0; j <= n; j++) {
-                mpk1_h[i][j] = G1.newElementFromBytes(params.mpk1_h_bytes[i][j]).getImmutable();
-            }
-        }
+        PublicState s = new PublicState(params, precomputationBudget);
+        this.state = s;
 
-        this.mpk2_h = new Element[2][m + 1];
-        for (int i = 0; i < 2; i++) {
-            for (int j = 0; j <= m; j++) {
-                mpk2_h[i][j] = G1.newElementFromBytes(params.mpk2_h_bytes[i][j]).getImmutable();
-            }
+        // 旧参数下编译的配置及其密文头池不再有效
+        synchronized (profileCache) {
+            profileCache.clear();
         }
+        stopHeaderPools();
 
         System.out.println("✓ Encryption system initialized from public parameters");
-        System.out.println("  Vector dimensions: n=" + n + ", m=" + m);
+        System.out.println("  Vector dimensions: n=" + s.n + ", m=" + s.m);
+        System.out.printf("  Precomputed bases: %d (%.1f MB, %d ms)\n",
+                s.precomputedBases, s.precomputationMemory / 1048576.0, s.precomputationTime);
+    }
+
+    private PublicState requireState() {
+        PublicState s = state;
+        if (s == null) {
+            throw new IllegalStateException("Encryption system not initialized");
+        }
+        return s;
+    }
+
+    /**
+     * 设置预计算表的内存预算（字节），需在initializeFromPublicParams之前调用，0表示禁用
+     */
+    public void setPrecomputationBudget(long budgetBytes) {
+        this.precomputationBudget = Math.max(0, budgetBytes);
+    }
+
+    /**
+     * 开关预计算路径（保留已构建的表，便于对比测试）
+     */
+    public void setPrecomputationEnabled(boolean enabled) {
+        this.precomputationEnabled = enabled;
     }
 
     /**
@@ -79,75 +117,56 @@ public class EncryptionSystem implements Serializable {
                                     int threshold_d) {
         long startTime = System.nanoTime();
 
-        EncryptionResult result = new EncryptionResult();
-
+        EncryptionProfile profile;
         try {
-            // 编码属性和策略为向量
-            int[] attrVector_SA = encodeAttributes(senderAttributes, n);
-            int[] policyVector_PB = encodePolicy(senderPolicy, m);
-
-            // 选择随机数
-            Element r1 = Zp.newRandomElement();
-            Element r2 = Zp.newRandomElement();
-
-            // 构造加密向量x_SA
-            Element[] x_SA = new Element[n + 1];
-            for (int i = 0; i < n; i++) {
-                x_SA[i] = Zp.newElement(attrVector_SA[i]);
-            }
-            x_SA[n] = Z.duplicate().sub(Zp.newElement(threshold_d));
-
-            // 构造加密向量x_PB
-            Element[] x_PB = new Element[m + 1];
-            for (int i = 0; i < m; i++) {
-                x_PB[i] = Zp.newElement(policyVector_PB[i]);
-            }
-            x_PB[m] = Z.duplicate().sub(Zp.newElement(threshold_d));
-
-            // 计算密文组件CT1
-            Element c1_1 = G1.newOneElement();
-            Element c1_2 = G1.newOneElement();
+            profile = getProfile(senderAttributes, senderPolicy, threshold_d);
+        } catch (Exception e) {
+            e.printStackTrace();
+            EncryptionResult result = new EncryptionResult();
+            result.success = false;
+            result.errorMessage = e.getMessage();
+            return finishResult(result, message, startTime);
+        }
 
-            for (int j = 0; j <= n; j++) {
-                Element exp = r1.duplicate().mul(x_SA[j]);
-                c1_1.mul(mpk1_h[0][j].duplicate().powZn(exp));
-                c1_2.mul(mpk1_h[1][j].duplicate().powZn(exp));
-            }
+        return encrypt(profile, message, startTime);
+    }
 
-            c1_1 = c1_1.getImmutable();
-            c1_2 = c1_2.getImmutable();
+    /**
+     * 使用已编译的发送方配置加密消息：4次固定基幂运算 + 对称密钥导出
+     */
+    public EncryptionResult encrypt(EncryptionProfile profile, byte[] message) {
+        return encrypt(profile, message, System.nanoTime());
+    }
 
-            // 计算密文组件CT2
-            Element c2_1 = G1.newOneElement();
-            Element c2_2 = G1.newOneElement();
+    private EncryptionResult encrypt(EncryptionProfile profile, byte[] message, long startTime) {
+        EncryptionResult result = new EncryptionResult();
 
-            for (int j = 0; j <= m; j++) {
-                Element exp = r2.duplicate().mul(x_PB[j]);
-                c2_1.mul(mpk2_h[0][j].duplicate().powZn(exp));
-                c2_2.mul(mpk2_h[1][j].duplicate().powZn(exp));
+        try {
+            // 在线阶段：优先从预计算池取密文头，池空或未启用时现场计算
+            HeaderPool<EncryptionHeader> pool = profile.headerPool;
+            EncryptionHeader header = pool != null ? pool.poll() : null;
+            if (header == null) {
+                header = generateHeader(profile);
             }
 
-            c2_1 = c2_1.getImmutable();
-            c2_2 = c2_2.getImmutable();
-
-            // 计算对称密钥
-            Element K1 = pairing.pairing(g1, g2).powZn(r1.duplicate().mul(Z));
-            Element K2 = pairing.pairing(g1, g2).powZn(r2.duplicate().mul(Z));
-            byte[] K_sym = deriveSymmetricKey(K1, K2);
-
-            // AES加密消息
-            byte[] encryptedMessage = encryptAES(message, K_sym);
+            // 加密消息：大消息走分块并行AES-GCM，其余走AES-CBC
+            boolean chunked = chunkedDemThreshold > 0 && message.length >= chunkedDemThreshold;
+            byte[] encryptedMessage = chunked ?
+                    ChunkedDEM.encrypt(header.K_sym, message,
+                            SystemParameters.DemConfig.CHUNK_SIZE, getDemExecutor()) :
+                    encryptAES(message, header.K_sym);
 
             // 组装密文
             Ciphertext ct = new Ciphertext();
-            ct.c1_1 = c1_1.toBytes();
-            ct.c1_2 = c1_2.toBytes();
-            ct.c2_1 = c2_1.toBytes();
-            ct.c2_2 = c2_2.toBytes();
+            ct.c1_1 = header.c1_1;
+            ct.c1_2 = header.c1_2;
+            ct.c2_1 = header.c2_1;
+            ct.c2_2 = header.c2_2;
             ct.encryptedMessage = encryptedMessage;
+            ct.demMode = chunked ? Ciphertext.DEM_CHUNKED_GCM : Ciphertext.DEM_CBC;
             ct.timestamp = System.currentTimeMillis();
-            ct.senderAttributes = senderAttributes.size();
-            ct.threshold = threshold_d;
+            ct.senderAttributes = profile.attributeCount;
+            ct.threshold = profile.threshold;
 
             result.ciphertext = ct;
             result.success = true;
@@ -158,6 +177,96 @@ public class EncryptionSystem implements Serializable {
             e.printStackTrace();
         }
 
+        return finishResult(result, message, startTime);
+    }
+
+    /**
+     * 离线阶段：生成与消息无关的密文头（4个G1组件）和对称密钥
+     */
+    private EncryptionHeader generateHeader(EncryptionProfile profile) {
+        PublicState s = requireState();
+        SecureRandom random = CONTEXT.get().random;
+
+        // 选择随机数（线程私有DRBG，避免共享SecureRandom上的锁竞争）
+        Element r1 = s.randomZr(random);
+        Element r2 = s.randomZr(random);
+
+        // 计算密文组件CT1和CT2
+        EncryptionHeader header = new EncryptionHeader();
+        header.c1_1 = profile.pow(0, r1, precomputationEnabled).toBytes();
+        header.c1_2 = profile.pow(1, r1, precomputationEnabled).toBytes();
+        header.c2_1 = profile.pow(2, r2, precomputationEnabled).toBytes();
+        header.c2_2 = profile.pow(3, r2, precomputationEnabled).toBytes();
+
+        // 计算对称密钥 K = e(g1,g2)^{rZ} = (e(g1,g2)^Z)^r，无需配对运算
+        Element K1 = s.powEggZ(r1, precomputationEnabled);
+        Element K2 = s.powEggZ(r2, precomputationEnabled);
+        header.K_sym = deriveSymmetricKey(K1, K2);
+
+        return header;
+    }
+
+    /**
+     * 为指定配置启动后台密文头池（离线/在线模式），已启动时不重复创建
+     */
+    public void startHeaderPool(EncryptionProfile profile, int capacity) {
+        synchronized (headerPools) {
+            if (profile.headerPool != null) {
+                return;
+            }
+
+            HeaderPool<EncryptionHeader> pool = new HeaderPool<>(
+                    "wfibe-header-pool-" + headerPools.size(), capacity,
+                    SystemParameters.PrecomputationConfig.HEADER_POOL_PRODUCERS,
+                    () -> generateHeader(profile));
+            profile.headerPool = pool;
+            headerPools.add(profile);
+            pool.start();
+        }
+    }
+
+    /**
+     * 停止所有密文头池，之后的加密回到现场计算
+     */
+    public void stopHeaderPools() {
+        synchronized (headerPools) {
+            for (EncryptionProfile profile : headerPools) {
+                profile.headerPool.stop();
+                profile.headerPool = null;
+            }
+            headerPools.clear();
+        }
+    }
+
+    /**
+     * 停止单个配置的密文头池，未启动时不做任何事
+     */
+    private void stopHeaderPool(EncryptionProfile profile) {
+        synchronized (headerPools) {
+            if (profile.headerPool == null) {
+                return;
+            }
+            profile.headerPool.stop();
+            profile.headerPool = null;
+            headerPools.remove(profile);
+        }
+    }
+
+    /**
+     * 获取指定配置的密文头池统计，未启动时返回null
+     */
+    public HeaderPoolStatistics getHeaderPoolStatistics(EncryptionProfile profile) {
+        HeaderPool<EncryptionHeader> pool = profile.headerPool;
+        if (pool == null) {
+            return null;
+        }
+
+        HeaderPoolStatistics stats = new HeaderPoolStatistics();
+        pool.fillStatistics(stats);
+        return stats;
+    }
+
+    private EncryptionResult finishResult(EncryptionResult result, byte[] message, long startTime) {
         long endTime = System.nanoTime();
         long encryptionTime = (endTime - startTime) / 1_000_000; // ms
 
@@ -167,87 +276,257 @@ public class EncryptionSystem implements Serializable {
         result.expansionRate = (double) result.ciphertextSize / message.length;
 
         // 更新统计
-        totalEncryptionTime += encryptionTime;
-        encryptionCount++;
+        recordEncryption(encryptionTime);
 
         return result;
     }
 
+    private void recordEncryption(long encryptionTime) {
+        totalEncryptionTime.add(encryptionTime);
+        encryptionCount.increment();
+    }
+
+    /**
+     * 获取发送方配置，命中LRU缓存时直接复用，否则编译后放入缓存
+     */
+    public EncryptionProfile getProfile(Set<String> senderAttributes,
+                                        Map<String, Integer> senderPolicy,
+                                        int threshold_d) {
+        PublicState s = requireState();
+        SparseVector x_SA = encodeAttributes(senderAttributes, s.n);
+        SparseVector x_PB = encodePolicy(senderPolicy, s.m);
+        ProfileKey key = new ProfileKey(x_SA, x_PB, threshold_d, senderAttributes.size());
+
+        EncryptionProfile cached;
+        synchronized (profileCache) {
+            cached = profileCache.get(key);
+        }
+        if (cached != null) {
+            profileCacheHits.increment();
+            return cached;
+        }
+        profileCacheMisses.increment();
+
+        EncryptionProfile profile = compileProfile(s, key);
+
+        synchronized (profileCache) {
+            // 并发编译同一配置时保留先放入的，归还本次建表的预算
+            EncryptionProfile existing = profileCache.get(key);
+            if (existing != null) {
+                profile.releaseTables();
+                return existing;
+            }
+            profileCache.put(key, profile);
+        }
+        return profile;
+    }
+
+    /**
+     * 编译发送方配置：密文组件中与r无关的部分 Π_j h_j^{x_j} 对同一配置恒定，
+     * 预先算出4个聚合底数，并在剩余的预计算预算内为其构建固定基表
+     */
+    private EncryptionProfile compileProfile(PublicState s, ProfileKey key) {
+        long startTime = System.nanoTime();
+
+        // 阈值坐标 Z - d
+        Element thresholdCoord = s.Z.duplicate().sub(s.Zp.newElement(key.threshold)).getImmutable();
+
+        Element[] a1 = aggregateBases(s, s.mpk1_h, s.mpk1_pp, key.x_SA, s.n, thresholdCoord);
+        Element[] a2 = aggregateBases(s, s.mpk2_h, s.mpk2_pp, key.x_PB, s.m, thresholdCoord);
+
+        Element[] bases = {a1[0], a1[1], a2[0], a2[1]};
+        ElementPowPreProcessing[] tables = new ElementPowPreProcessing[bases.length];
+        long tableMemory = 0;
+        for (int i = 0; i < bases.length && s.reserveProfileTable(); i++) {
+            tables[i] = bases[i].getElementPowPreProcessing();
+            tableMemory += s.tableSize;
+        }
+
+        long compileTime = (System.nanoTime() - startTime) / 1_000_000;
+        return new EncryptionProfile(bases, tables, s, tableMemory,
+                key.attributeCount, key.threshold, compileTime);
+    }
+
+    /**
+     * 计算与r无关的聚合底数 Π_j h_i,j^{x_j} · h_i,thr^{Z-d}
+     * 非零坐标的权重是小整数，用加法链完成；阈值坐标是全长指数，走固定基表
+     */
+    private Element[] aggregateBases(PublicState s, Element[][] bases, ElementPowPreProcessing[][] tables,
+                                     SparseVector x, int thresholdIndex, Element thresholdCoord) {
+        Element a_1 = s.G1.newOneElement();
+        Element a_2 = s.G1.newOneElement();
+
+        for (int k = 0; k < x.size(); k++) {
+            int j = x.getIndex(k);
+            int weight = x.getWeight(k);
+            a_1.mul(smallPow(s.G1, bases[0][j], weight));
+            a_2.mul(smallPow(s.G1, bases[1][j], weight));
+        }
+
+        boolean usePrecomputation = precomputationEnabled;
+        a_1.mul(s.powBase(bases, tables, 0, thresholdIndex, thresholdCoord, usePrecomputation));
+        a_2.mul(s.powBase(bases, tables, 1, thresholdIndex, thresholdCoord, usePrecomputation));
+
+        return new Element[]{a_1.getImmutable(), a_2.getImmutable()};
+    }
+
+    /**
+     * 小整数指数幂：从高位到低位的平方-乘加法链，权重1~3只需0~2次群运算
+     */
+    private Element smallPow(Field field, Element base, int exponent) {
+        int e = Math.abs(exponent);
+        if (e == 0) {
+            return field.newOneElement();
+        }
+
+        Element result = base.duplicate();
+        for (int bit = 30 - Integer.numberOfLeadingZeros(e); bit >= 0; bit--) {
+            result.square();
+            if (((e >>> bit) & 1) != 0) {
+                result.mul(base);
+            }
+        }
+
+        return exponent < 0 ? result.invert() : result;
+    }
+
     /**
      * 批量加密（优化性能）
      */
-    public List<EncryptionResult> encryptBatch(List<byte[]> messages,
-                                               Set<String> senderAttributes,
-                                               Map<String, Integer> senderPolicy,
-                                               int threshold_d) {
-        List<EncryptionResult> results = new ArrayList<>();
+    public BatchEncryptionResult encryptBatch(List<byte[]> messages,
+                                              Set<String> senderAttributes,
+                                              Map<String, Integer> senderPolicy,
+                                              int threshold_d) {
+        // 预先编码属性和策略并编译配置（只需一次）
+        EncryptionProfile profile = getProfile(senderAttributes, senderPolicy, threshold_d);
+        return encryptBatch(profile, messages);
+    }
 
-        // 预先编码属性和策略（只需编码一次）
-        int[] attrVector_SA = encodeAttributes(senderAttributes, n);
-        int[] policyVector_PB = encodePolicy(senderPolicy, m);
+    /**
+     * 使用同一配置批量加密，消息分发到批量执行器的各个线程，结果按输入顺序返回
+     */
+    public BatchEncryptionResult encryptBatch(EncryptionProfile profile, List<byte[]> messages) {
+        long startTime = System.nanoTime();
 
+        ExecutorService executor = getBatchExecutor();
+        List<Future<EncryptionResult>> futures = new ArrayList<>(messages.size());
         for (byte[] message : messages) {
-            // 使用预编码的向量加密
-            EncryptionResult result = encryptWithVectors(
-                    message, attrVector_SA, policyVector_PB, threshold_d);
-            results.add(result);
+            futures.add(executor.submit(() -> encrypt(profile, message)));
         }
 
-        return results;
+        BatchEncryptionResult batch = new BatchEncryptionResult();
+        batch.results = new ArrayList<>(messages.size());
+
+        for (int i = 0; i < futures.size(); i++) {
+            EncryptionResult result;
+            try {
+                result = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.subList(i, futures.size()).forEach(f -> f.cancel(true));
+                throw new RuntimeException("Batch encryption interrupted", e);
+            } catch (ExecutionException e) {
+                result = new EncryptionResult();
+                result.success = false;
+                result.errorMessage = e.getCause().getMessage();
+                result.messageSize = messages.get(i).length;
+            }
+
+            batch.results.add(result);
+            batch.totalBytes += result.messageSize;
+            if (result.success) {
+                batch.successCount++;
+            }
+        }
+
+        long elapsed = System.nanoTime() - startTime;
+        batch.totalTime = elapsed / 1_000_000;
+        double seconds = elapsed / 1e9;
+        batch.messagesPerSecond = seconds > 0 ? messages.size() / seconds : 0;
+        batch.megabytesPerSecond = seconds > 0 ? batch.totalBytes / 1048576.0 / seconds : 0;
+
+        return batch;
     }
 
     /**
-     * 使用预编码向量加密（内部方法）
+     * 指定批量加密使用的执行器
      */
-    private EncryptionResult encryptWithVectors(byte[] message,
-                                                int[] attrVector_SA,
-                                                int[] policyVector_PB,
-                                                int threshold_d) {
-        // 类似encrypt方法，但直接使用向量
-        // 实现略...
-        return encrypt(message, new HashSet<>(), new HashMap<>(), threshold_d);
+    public synchronized void setBatchExecutor(ExecutorService executor) {
+        this.batchExecutor = executor;
+    }
+
+    private synchronized ExecutorService getBatchExecutor() {
+        if (batchExecutor == null) {
+            batchExecutor = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return batchExecutor;
+    }
+
+    /**
+     * 设置分块DEM阈值（字节），0表示禁用
+     */
+    public void setChunkedDemThreshold(int thresholdBytes) {
+        this.chunkedDemThreshold = Math.max(0, thresholdBytes);
+    }
+
+    public int getChunkedDemThreshold() {
+        return chunkedDemThreshold;
     }
 
     /**
-     * 编码属性为向量
+     * 指定分块DEM使用的执行器
      */
-    private int[] encodeAttributes(Set<String> attributes, int dimension) {
-        int[] vector = new int[dimension];
+    public synchronized void setDemExecutor(ExecutorService executor) {
+        this.demExecutor = executor;
+    }
+
+    public synchronized ExecutorService getDemExecutor() {
+        if (demExecutor == null) {
+            demExecutor = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return demExecutor;
+    }
+
+    /**
+     * 编码属性为稀疏向量
+     */
+    private SparseVector encodeAttributes(Set<String> attributes, int dimension) {
+        SortedMap<Integer, Integer> entries = new TreeMap<>();
 
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            MessageDigest md = CONTEXT.get().sha256;
 
             for (String attr : attributes) {
                 byte[] hash = md.digest(attr.toLowerCase().trim().getBytes("UTF-8"));
                 int index = Math.abs(bytesToInt(hash)) % dimension;
-                vector[index] = 1;
+                entries.put(index, 1);
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
 
-        return vector;
+        return SparseVector.fromMap(dimension, entries);
     }
 
     /**
-     * 编码策略为向量
+     * 编码策略为稀疏向量
      */
-    private int[] encodePolicy(Map<String, Integer> policy, int dimension) {
-        int[] vector = new int[dimension];
+    private SparseVector encodePolicy(Map<String, Integer> policy, int dimension) {
+        SortedMap<Integer, Integer> entries = new TreeMap<>();
 
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            MessageDigest md = CONTEXT.get().sha256;
 
             for (Map.Entry<String, Integer> entry : policy.entrySet()) {
                 byte[] hash = md.digest(entry.getKey().toLowerCase().trim().getBytes("UTF-8"));
                 int index = Math.abs(bytesToInt(hash)) % dimension;
-                vector[index] = entry.getValue();
+                entries.put(index, entry.getValue());
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
 
-        return vector;
+        return SparseVector.fromMap(dimension, entries);
     }
 
     private int bytesToInt(byte[] bytes) {
@@ -261,14 +540,10 @@ public class EncryptionSystem implements Serializable {
      * 导出对称密钥
      */
     private byte[] deriveSymmetricKey(Element K1, Element K2) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(K1.toBytes());
-            md.update(K2.toBytes());
-            return md.digest();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to derive symmetric key", e);
-        }
+        MessageDigest md = CONTEXT.get().sha256;
+        md.update(K1.toBytes());
+        md.update(K2.toBytes());
+        return md.digest();
     }
 
     /**
@@ -276,30 +551,137 @@ public class EncryptionSystem implements Serializable {
      */
     private byte[] encryptAES(byte[] plaintext, byte[] key) {
         try {
-            // 使用AES-256
-            SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
-            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            CryptoContext context = CONTEXT.get();
 
             // 生成随机IV
             byte[] iv = new byte[16];
-            new SecureRandom().nextBytes(iv);
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
+            context.random.nextBytes(iv);
+            Cipher cipher = context.aesCbc;
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
 
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
-            byte[] encrypted = cipher.doFinal(plaintext);
-
-            // 将IV附加到密文前面
-            byte[] result = new byte[iv.length + encrypted.length];
+            // 密文直接写在IV之后，避免额外的整段拷贝
+            byte[] result = new byte[iv.length + cipher.getOutputSize(plaintext.length)];
             System.arraycopy(iv, 0, result, 0, iv.length);
-            System.arraycopy(encrypted, 0, result, iv.length, encrypted.length);
+            int written = cipher.doFinal(plaintext, 0, plaintext.length, result, iv.length);
 
-            return result;
+            return written + iv.length == result.length ?
+                    result : Arrays.copyOf(result, iv.length + written);
 
         } catch (Exception e) {
             throw new RuntimeException("AES encryption failed", e);
         }
     }
 
+    /**
+     * 创建独立的AES-256-CBC加密器（流式加密跨越多次I/O调用，不占用线程私有的Cipher）
+     */
+    private Cipher newAESCipher(byte[] key, byte[] iv) throws Exception {
+        SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, keySpec, new IvParameterSpec(iv));
+        return cipher;
+    }
+
+    /**
+     * 流式加密：先写出WFIBE密文头，再按固定大小分块写出AES层
+     * 堆内存占用为O(块大小)，与消息大小无关
+     */
+    public StreamEncryptionResult encryptStream(EncryptionProfile profile,
+                                                InputStream in, OutputStream out) throws IOException {
+        return encryptStream(profile, Channels.newChannel(in), Channels.newChannel(out));
+    }
+
+    /**
+     * 流式加密（通道版本）
+     * 输出格式：4个长度前缀的G1组件 | 时间戳 | 属性数 | 阈值 | IV | AES-CBC密文（至流结束）
+     */
+    public StreamEncryptionResult encryptStream(EncryptionProfile profile,
+                                                ReadableByteChannel in,
+                                                WritableByteChannel out) throws IOException {
+        long startTime = System.nanoTime();
+        StreamEncryptionResult result = new StreamEncryptionResult();
+
+        HeaderPool<EncryptionHeader> pool = profile.headerPool;
+        EncryptionHeader header = pool != null ? pool.poll() : null;
+        if (header == null) {
+            header = generateHeader(profile);
+        }
+
+        byte[] iv = new byte[16];
+        CONTEXT.get().random.nextBytes(iv);
+        Cipher cipher;
+        try {
+            cipher = newAESCipher(header.K_sym, iv);
+        } catch (Exception e) {
+            throw new RuntimeException("AES encryption failed", e);
+        }
+
+        // 写出密文头
+        int headerSize = 4 * 4 + header.c1_1.length + header.c1_2.length +
+                header.c2_1.length + header.c2_2.length + 8 + 4 + 4 + iv.length;
+        ByteBuffer headerBuf = ByteBuffer.allocate(headerSize);
+        for (byte[] component : new byte[][]{header.c1_1, header.c1_2, header.c2_1, header.c2_2}) {
+            headerBuf.putInt(component.length).put(component);
+        }
+        headerBuf.putLong(System.currentTimeMillis());
+        headerBuf.putInt(profile.attributeCount);
+        headerBuf.putInt(profile.threshold);
+        headerBuf.put(iv);
+        headerBuf.flip();
+        writeFully(out, headerBuf);
+
+        // 分块加密对称层
+        int chunkSize = SystemParameters.NetworkConfig.BUFFER_SIZE;
+        ByteBuffer inBuf = ByteBuffer.allocate(chunkSize);
+        ByteBuffer outBuf = ByteBuffer.allocate(cipher.getOutputSize(chunkSize));
+        long bytesRead = 0;
+        long bytesWritten = 0;
+
+        try {
+            int read;
+            while ((read = in.read(inBuf)) != -1) {
+                bytesRead += read;
+                if (inBuf.hasRemaining()) {
+                    continue;
+                }
+                inBuf.flip();
+                cipher.update(inBuf, outBuf);
+                outBuf.flip();
+                bytesWritten += writeFully(out, outBuf);
+                inBuf.clear();
+                outBuf.clear();
+            }
+
+            inBuf.flip();
+            cipher.doFinal(inBuf, outBuf);
+            outBuf.flip();
+            bytesWritten += writeFully(out, outBuf);
+
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("AES encryption failed", e);
+        }
+
+        long encryptionTime = (System.nanoTime() - startTime) / 1_000_000;
+        recordEncryption(encryptionTime);
+
+        result.headerSize = headerSize;
+        result.plaintextBytes = bytesRead;
+        result.ciphertextBytes = headerSize + bytesWritten;
+        result.encryptionTime = encryptionTime;
+        result.success = true;
+        return result;
+    }
+
+    private int writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            total += out.write(buffer);
+        }
+        return total;
+    }
+
     /**
      * 计算密文大小
      */
@@ -319,10 +701,24 @@ public class EncryptionSystem implements Serializable {
      */
     public EncryptionStatistics getStatistics() {
         EncryptionStatistics stats = new EncryptionStatistics();
-        stats.totalEncryptions = encryptionCount;
-        stats.totalTime = totalEncryptionTime;
-        stats.averageTime = encryptionCount > 0 ?
-                (double) totalEncryptionTime / encryptionCount : 0;
+        long count = encryptionCount.sum();
+        long totalTime = totalEncryptionTime.sum();
+        stats.totalEncryptions = (int) count;
+        stats.totalTime = totalTime;
+        stats.averageTime = count > 0 ? (double) totalTime / count : 0;
+
+        PublicState s = state;
+        if (s != null) {
+            stats.precomputedBases = s.precomputedBases;
+            stats.profileTableMemory = s.profileTableMemory.get();
+            stats.precomputationMemory = s.precomputationMemory + stats.profileTableMemory;
+            stats.precomputationTime = s.precomputationTime;
+        }
+        synchronized (profileCache) {
+            stats.cachedProfiles = profileCache.size();
+        }
+        stats.profileCacheHits = profileCacheHits.sum();
+        stats.profileCacheMisses = profileCacheMisses.sum();
         return stats;
     }
 
@@ -338,10 +734,31 @@ public class EncryptionSystem implements Serializable {
         public String errorMessage;
     }
 
+    public static class StreamEncryptionResult {
+        public int headerSize;
+        public long plaintextBytes;
+        public long ciphertextBytes;  // 含密文头
+        public long encryptionTime;
+        public boolean success;
+    }
+
+    public static class BatchEncryptionResult {
+        public List<EncryptionResult> results;  // 与输入消息顺序一致
+        public int successCount;
+        public long totalBytes;
+        public long totalTime;                  // 墙钟时间（ms）
+        public double messagesPerSecond;
+        public double megabytesPerSecond;
+    }
+
     public static class Ciphertext implements Serializable {
+        public static final int DEM_CBC = 0;          // IV | AES-CBC
+        public static final int DEM_CHUNKED_GCM = 1;  // 见ChunkedDEM
+
         public byte[] c1_1, c1_2;  // CT1组件
         public byte[] c2_1, c2_2;  // CT2组件
         public byte[] encryptedMessage;
+        public int demMode;
         public long timestamp;
         public int senderAttributes;
         public int threshold;
@@ -351,5 +768,296 @@ public class EncryptionSystem implements Serializable {
         public int totalEncryptions;
         public long totalTime;
         public double averageTime;
+        public int precomputedBases;      // 主公钥及GT的固定基表数
+        public long precomputationMemory; // 全部固定基表占用的内存，含发送方配置的表
+        public long profileTableMemory;   // 其中发送方配置的表占用的内存
+        public long precomputationTime;
+        public int cachedProfiles;
+        public long profileCacheHits;
+        public long profileCacheMisses;
+    }
+
+    /**
+     * 已编译的发送方配置
+     * 保存4个聚合底数 (Π h_j^{x_j}) · h_thr^{Z-d} 及其固定基表，按 [c1_1, c1_2, c2_1, c2_2] 排列
+     */
+    public static class EncryptionProfile {
+        private final Element[] bases;
+        private final ElementPowPreProcessing[] tables;
+        private final PublicState state;  // 表占用的预算记在编译时的公共参数状态上
+        private final long tableMemory;
+        private final int attributeCount;
+        private final int threshold;
+        private final long compileTime;
+        private volatile HeaderPool<EncryptionHeader> headerPool;
+
+        private EncryptionProfile(Element[] bases, ElementPowPreProcessing[] tables,
+                                  PublicState state, long tableMemory,
+                                  int attributeCount, int threshold, long compileTime) {
+            this.bases = bases;
+            this.tables = tables;
+            this.state = state;
+            this.tableMemory = tableMemory;
+            this.attributeCount = attributeCount;
+            this.threshold = threshold;
+            this.compileTime = compileTime;
+        }
+
+        /**
+         * 配置离开缓存时调用，归还表占用的预算；表本身仍可被正在使用该配置的线程读取
+         */
+        private void releaseTables() {
+            state.profileTableMemory.addAndGet(-tableMemory);
+        }
+
+        private Element pow(int component, Element r, boolean usePrecomputation) {
+            if (usePrecomputation && tables[component] != null) {
+                return tables[component].powZn(r).getImmutable();
+            }
+            return bases[component].duplicate().powZn(r).getImmutable();
+        }
+
+        public int getAttributeCount() {
+            return attributeCount;
+        }
+
+        public int getThreshold() {
+            return threshold;
+        }
+
+        public long getCompileTime() {
+            return compileTime;
+        }
+    }
+
+    /**
+     * 预计算的密文头及对应的对称密钥，每个条目只能使用一次
+     */
+    static class EncryptionHeader {
+        byte[] c1_1, c1_2;
+        byte[] c2_1, c2_2;
+        byte[] K_sym;
+    }
+
+    public static class HeaderPoolStatistics {
+        public int capacity;
+        public int depth;         // 当前池深度
+        public int minDepth;      // 观察到的最低池深度
+        public long produced;
+        public long hits;
+        public long misses;       // 池空时现场计算的次数
+        public long producerFailures; // 生产线程失败（随后退避重启）的次数
+        public double refillRate; // 补充速率（条/秒）
+    }
+
+    /**
+     * 公共参数状态：除发送方配置表的预算计数外构造完成后不再修改，可被任意多个加密线程无锁共享
+     * 固定基表的powZn只读取表内容，同样可以并发调用
+     */
+    private static final class PublicState {
+        final int n, m;
+        final Field G1, GT, Zp;
+        final Element Z;
+
+        // e(g1,g2)^Z 及其固定基表，用于免配对导出K1/K2
+        final Element eggZ;
+        final ElementPowPreProcessing eggZ_pp;
+
+        // 主公钥及其固定基预计算表（未建表的位置为null）
+        final Element[][] mpk1_h;
+        final Element[][] mpk2_h;
+        final ElementPowPreProcessing[][] mpk1_pp;
+        final ElementPowPreProcessing[][] mpk2_pp;
+
+        final int precomputedBases;
+        final long precomputationMemory;
+        final long precomputationTime;
+
+        // 预计算预算由主公钥/GT表和发送方配置表共用；配置表在编译时预留，离开缓存时归还
+        final long precomputationBudget;
+        final long tableSize;  // 单个G1固定基表的估算大小
+        final AtomicLong profileTableMemory = new AtomicLong();
+
+        PublicState(WFIBESystem.PublicParameters params, long precomputationBudget) {
+            this.n = params.n;
+            this.m = params.m;
+
+            // 初始化配对
+            Pairing pairing = PairingFactory.getPairing(params.pairingParams);
+            this.G1 = pairing.getG1();
+            this.GT = pairing.getGT();
+            this.Zp = pairing.getZr();
+
+            // 恢复群元素
+            Element g1 = G1.newElementFromBytes(params.g1_bytes).getImmutable();
+            Element g2 = pairing.getG2().newElementFromBytes(params.g2_bytes).getImmutable();
+            this.Z = Zp.newElementFromBytes(params.Z_bytes).getImmutable();
+
+            // e(g1,g2)^Z只依赖公共参数，初始化时计算一次
+            this.eggZ = pairing.pairing(g1, g2).powZn(Z).getImmutable();
+
+            // 恢复主公钥
+            this.mpk1_h = restoreKeys(params.mpk1_h_bytes, n);
+            this.mpk2_h = restoreKeys(params.mpk2_h_bytes, m);
+
+            // 在内存预算内构建固定基预计算表
+            // 其余坐标的指数是小整数权重（见aggregateBases），只有阈值坐标（下标n/m）需要全长指数
+            long startTime = System.nanoTime();
+            this.mpk1_pp = new ElementPowPreProcessing[2][n + 1];
+            this.mpk2_pp = new ElementPowPreProcessing[2][m + 1];
+
+            this.precomputationBudget = precomputationBudget;
+            this.tableSize = estimateTableSize(G1);
+            long gtTableSize = estimateTableSize(GT);
+            int bases = 0;
+            long memory = 0;
+
+            if (precomputationBudget >= gtTableSize + tableSize) {
+                // GT表每条消息用两次，优先构建
+                this.eggZ_pp = eggZ.getElementPowPreProcessing();
+                bases++;
+                memory += gtTableSize;
+
+                ElementPowPreProcessing[][][] tables = {mpk1_pp, mpk1_pp, mpk2_pp, mpk2_pp};
+                Element[][][] keys = {mpk1_h, mpk1_h, mpk2_h, mpk2_h};
+                int[] columns = {n, n, m, m};
+                for (int t = 0; t < tables.length && memory + tableSize <= precomputationBudget; t++) {
+                    int i = t % 2;
+                    tables[t][i][columns[t]] = keys[t][i][columns[t]].getElementPowPreProcessing();
+                    bases++;
+                    memory += tableSize;
+                }
+            } else {
+                this.eggZ_pp = null;
+            }
+
+            this.precomputedBases = bases;
+            this.precomputationMemory = memory;
+            this.precomputationTime = (System.nanoTime() - startTime) / 1_000_000;
+        }
+
+        /**
+         * 为发送方配置预留一个G1表的预算，剩余预算不足时返回false
+         */
+        boolean reserveProfileTable() {
+            while (true) {
+                long used = profileTableMemory.get();
+                if (precomputationMemory + used + tableSize > precomputationBudget) {
+                    return false;
+                }
+                if (profileTableMemory.compareAndSet(used, used + tableSize)) {
+                    return true;
+                }
+            }
+        }
+
+        private Element[][] restoreKeys(byte[][][] bytes, int dimension) {
+            Element[][] keys = new Element[2][dimension + 1];
+            for (int i = 0; i < 2; i++) {
+                for (int j = 0; j <= dimension; j++) {
+                    keys[i][j] = G1.newElementFromBytes(bytes[i][j]).getImmutable();
+                }
+            }
+            return keys;
+        }
+
+        /**
+         * 估算单个固定基表的大小：(⌈|r|/k⌉ + 1) · 2^k 个群元素
+         */
+        private long estimateTableSize(Field field) {
+            int k = SystemParameters.PrecomputationConfig.WINDOW_BITS;
+            int bits = Zp.getOrder().bitLength();
+            long entries = (long) (bits / k + 1) << k;
+            return entries * field.getLengthInBytes();
+        }
+
+        /**
+         * 计算 base^exp，有预计算表时走固定基路径
+         */
+        Element powBase(Element[][] bases, ElementPowPreProcessing[][] tables,
+                        int i, int j, Element exp, boolean usePrecomputation) {
+            if (usePrecomputation && tables[i][j] != null) {
+                return tables[i][j].powZn(exp);
+            }
+            return bases[i][j].duplicate().powZn(exp);
+        }
+
+        /**
+         * 计算 (e(g1,g2)^Z)^r，有GT固定基表时走查表路径
+         */
+        Element powEggZ(Element r, boolean usePrecomputation) {
+            if (usePrecomputation && eggZ_pp != null) {
+                return eggZ_pp.powZn(r);
+            }
+            return eggZ.duplicate().powZn(r);
+        }
+
+        /**
+         * 由调用方提供的随机源均匀选取Zr元素（多取64位再取模，偏差可忽略）
+         */
+        Element randomZr(SecureRandom random) {
+            BigInteger order = Zp.getOrder();
+            return Zp.newElement(new BigInteger(order.bitLength() + 64, random).mod(order)).getImmutable();
+        }
+    }
+
+    /**
+     * 线程私有的加密上下文，只能在创建它的线程内使用
+     */
+    private static final class CryptoContext {
+        final MessageDigest sha256;
+        final Cipher aesCbc;
+        final SecureRandom random;
+
+        CryptoContext() {
+            try {
+                this.sha256 = MessageDigest.getInstance("SHA-256");
+                this.aesCbc = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Failed to create crypto context", e);
+            }
+            this.random = newDrbg();
+        }
+
+        private static SecureRandom newDrbg() {
+            try {
+                return SecureRandom.getInstance("DRBG");
+            } catch (NoSuchAlgorithmException e) {
+                return new SecureRandom();
+            }
+        }
+    }
+
+    /**
+     * 配置缓存键：以编码后的稀疏向量作为属性集/策略的规范形式
+     */
+    private static final class ProfileKey {
+        final SparseVector x_SA;
+        final SparseVector x_PB;
+        final int threshold;
+        final int attributeCount;
+
+        ProfileKey(SparseVector x_SA, SparseVector x_PB, int threshold, int attributeCount) {
+            this.x_SA = x_SA;
+            this.x_PB = x_PB;
+            this.threshold = threshold;
+            this.attributeCount = attributeCount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ProfileKey)) return false;
+            ProfileKey other = (ProfileKey) o;
+            return threshold == other.threshold &&
+                    attributeCount == other.attributeCount &&
+                    x_SA.equals(other.x_SA) &&
+                    x_PB.equals(other.x_PB);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(x_SA, x_PB, threshold, attributeCount);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.wfibe.crypto;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.Supplier;
+
+/**
+ * 预计算密文头池
+ * 后台生产线程在空闲时持续生成条目并放入有界队列，队列满时阻塞等待消费
+ * 生产失败时计数并退避后重新开始生产，连续失败时退避时间加倍，生产线程不会因异常退出
+ */
+class HeaderPool<T> {
+
+    private final BlockingQueue<T> queue;
+    private final Supplier<T> producer;
+    private final Thread[] producerThreads;
+    private final int capacity;
+    private volatile boolean running;
+
+    // 统计
+    private final AtomicLong produced = new AtomicLong();
+    private final AtomicLong producerBusyNanos = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicInteger minDepth;
+    private final AtomicLong failures = new AtomicLong();
+
+    // 生产失败后的退避时间（毫秒）
+    private static final long MIN_BACKOFF_MILLIS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    HeaderPool(String name, int capacity, int producers, Supplier<T> producer) {
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.producer = producer;
+        this.minDepth = new AtomicInteger(capacity);
+        this.producerThreads = new Thread[producers];
+
+        for (int i = 0; i < producers; i++) {
+            Thread thread = new Thread(this::produce, name + "-" + i);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            producerThreads[i] = thread;
+        }
+    }
+
+    void start() {
+        running = true;
+        for (Thread thread : producerThreads) {
+            thread.start();
+        }
+    }
+
+    void stop() {
+        running = false;
+        for (Thread thread : producerThreads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 取出一个预计算条目，池空时返回null（记为一次未命中）
+     */
+    T poll() {
+        T item = queue.poll();
+        if (item == null) {
+            misses.incrementAndGet();
+            minDepth.set(0);
+            return null;
+        }
+
+        hits.incrementAndGet();
+        minDepth.accumulateAndGet(queue.size(), Math::min);
+        return item;
+    }
+
+    private void produce() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (running) {
+            try {
+                long start = System.nanoTime();
+                T item;
+                try {
+                    item = producer.get();
+                } catch (RuntimeException e) {
+                    long count = failures.incrementAndGet();
+                    System.err.println("Header pool producer failed (" + count + " failures), restarting in " +
+                            backoff + " ms: " + e);
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                    continue;
+                }
+                backoff = MIN_BACKOFF_MILLIS;
+                producerBusyNanos.addAndGet(System.nanoTime() - start);
+                produced.incrementAndGet();
+
+                queue.put(item);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    void fillStatistics(EncryptionSystem.HeaderPoolStatistics stats) {
+        stats.capacity = capacity;
+        stats.depth = queue.size();
+        stats.minDepth = minDepth.get();
+        stats.produced = produced.get();
+        stats.hits = hits.get();
+        stats.misses = misses.get();
+        stats.producerFailures = failures.get();
+
+        // 生产线程实际工作时间内的总补充速率（条/秒）
+        double busySeconds = producerBusyNanos.get() / 1e9;
+        stats.refillRate = busySeconds > 0 ?
+                produced.get() / busySeconds * producerThreads.length : 0;
+    }
+}
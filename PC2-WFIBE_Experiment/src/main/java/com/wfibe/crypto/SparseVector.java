@@ -0,0 +1,105 @@
+package com.wfibe.crypto;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * 稀疏编码向量
+ * 只保存非零坐标的(下标, 权重)对，下标升序排列
+ * 阈值坐标（加密端为Z - d）不在向量中存储，由调用方单独处理
+ */
+public class SparseVector implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int dimension;
+    private final int[] indices;
+    private final int[] weights;
+
+    private SparseVector(int dimension, int[] indices, int[] weights) {
+        this.dimension = dimension;
+        this.indices = indices;
+        this.weights = weights;
+    }
+
+    /**
+     * 由(下标 -> 权重)映射构造，权重为0的坐标被丢弃
+     */
+    public static SparseVector fromMap(int dimension, SortedMap<Integer, Integer> entries) {
+        int count = 0;
+        for (int weight : entries.values()) {
+            if (weight != 0) count++;
+        }
+
+        int[] indices = new int[count];
+        int[] weights = new int[count];
+        int k = 0;
+        for (Map.Entry<Integer, Integer> entry : entries.entrySet()) {
+            if (entry.getValue() != 0) {
+                indices[k] = entry.getKey();
+                weights[k] = entry.getValue();
+                k++;
+            }
+        }
+
+        return new SparseVector(dimension, indices, weights);
+    }
+
+    /**
+     * 由稠密向量构造
+     */
+    public static SparseVector fromDense(int[] vector) {
+        SortedMap<Integer, Integer> entries = new TreeMap<>();
+        for (int i = 0; i < vector.length; i++) {
+            if (vector[i] != 0) {
+                entries.put(i, vector[i]);
+            }
+        }
+        return fromMap(vector.length, entries);
+    }
+
+    /**
+     * 还原为稠密向量
+     */
+    public int[] toDense() {
+        int[] vector = new int[dimension];
+        for (int k = 0; k < indices.length; k++) {
+            vector[indices[k]] = weights[k];
+        }
+        return vector;
+    }
+
+    /**
+     * 非零坐标个数
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getIndex(int k) {
+        return indices[k];
+    }
+
+    public int getWeight(int k) {
+        return weights[k];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SparseVector)) return false;
+        SparseVector other = (SparseVector) o;
+        return dimension == other.dimension &&
+                Arrays.equals(indices, other.indices) &&
+                Arrays.equals(weights, other.weights);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * dimension + Arrays.hashCode(indices)) + Arrays.hashCode(weights);
+    }
+}
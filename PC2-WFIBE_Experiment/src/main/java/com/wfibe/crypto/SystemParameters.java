@@ -38,6 +38,30 @@ public class SystemParameters {
         public static final int DEFAULT_THRESHOLD = 50;
     }
 
+    // 预计算配置
+    public static final class PrecomputationConfig {
+        // 固定基窗口宽度（与JPBC ElementPowPreProcessing的默认值一致）
+        public static final int WINDOW_BITS = 5;
+
+        // 主公钥固定基表的默认内存预算（字节），0表示禁用
+        public static final long DEFAULT_MEMORY_BUDGET = 128L * 1024 * 1024; // 128MB
+
+        // 已编译发送方配置的LRU缓存容量（每个配置含4个固定基表）
+        public static final int PROFILE_CACHE_SIZE = 32;
+
+        // 每个密文头池的后台生产线程数
+        public static final int HEADER_POOL_PRODUCERS = 1;
+    }
+
+    // 对称层（DEM）配置
+    public static final class DemConfig {
+        // 达到该大小（字节）的消息使用分块AES-GCM，0表示始终使用AES-CBC
+        public static final int DEFAULT_CHUNKED_THRESHOLD = 0;
+
+        // 分块大小（字节）
+        public static final int CHUNK_SIZE = 256 * 1024; // 256KB
+    }
+
     // 网络配置
     public static final class NetworkConfig {
         public static final String KGC_IP = "192.168.1.100";
@@ -28,11 +28,28 @@ public class SenderMain {
         boolean autoMode = params.containsKey("auto");
         boolean batchMode = params.containsKey("batch");
         boolean testAll = params.containsKey("test-all");
+        boolean precomputeBenchmark = params.containsKey("precompute-benchmark");
+        boolean streamMode = params.containsKey("stream");
+        boolean demBenchmark = params.containsKey("dem-benchmark");
 
         try {
             // 初始化发送方客户端
             System.out.println(">>> Initializing Sender Client...\n");
             senderClient = new SenderClient(RECEIVER_IP, RECEIVER_PORT);
+            if (params.containsKey("precompute-budget")) {
+                long budgetMB = Long.parseLong(params.get("precompute-budget"));
+                senderClient.setPrecomputationBudget(budgetMB * 1024 * 1024);
+            }
+            if (params.containsKey("chunked-dem")) {
+                int thresholdKB = Integer.parseInt(params.get("chunked-dem"));
+                senderClient.setChunkedDemThreshold(thresholdKB * 1024);
+            }
+            if (params.containsKey("instance")) {
+                senderClient.setInstanceId(params.get("instance"));
+            }
+            if (params.containsKey("header-pool")) {
+                senderClient.setHeaderPoolCapacity(Integer.parseInt(params.get("header-pool")));
+            }
             senderClient.initialize();
 
             // 添加关闭钩子
@@ -46,6 +63,15 @@ public class SenderMain {
             if (testAll) {
                 // 运行完整测试套件
                 runCompleteTestSuite();
+            } else if (demBenchmark) {
+                // 对称层吞吐量对比
+                senderClient.runDemComparisonTest(attributes, Math.min(iterations, 20));
+            } else if (streamMode) {
+                // 流式加密测试
+                senderClient.runStreamingEncryptionTest(messageSize, attributes, iterations);
+            } else if (precomputeBenchmark) {
+                // 预计算加速比测试
+                senderClient.runPrecomputationBenchmark(messageSize, iterations);
             } else if (autoMode) {
                 // 自动化测试模式
                 runAutomatedTests();
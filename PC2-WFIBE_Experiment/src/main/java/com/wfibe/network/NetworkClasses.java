@@ -18,6 +18,7 @@ class KeyRequest implements Serializable {
     public Set<String> attributes;
     public Map<String, Integer> policy;
     public String clientId;
+    public String instanceId;  // 为null时使用默认实例
     public long timestamp;
 
     public KeyRequest() {
@@ -40,6 +41,28 @@ class KeyRequest implements Serializable {
     }
 }
 
+/**
+ * 批量密钥请求（发送给KGC），响应按完成顺序逐个返回
+ */
+class BatchKeyRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public List<KeyRequest> requests;
+    public String clientId;
+    public long timestamp;
+
+    public BatchKeyRequest() {
+        this.requests = new ArrayList<>();
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public BatchKeyRequest(List<KeyRequest> requests, String clientId) {
+        this.requests = requests;
+        this.clientId = clientId;
+        this.timestamp = System.currentTimeMillis();
+    }
+}
+
 /**
  * 密钥响应（从KGC接收）
  */
@@ -47,11 +70,14 @@ class KeyResponse implements Serializable {
     private static final long serialVersionUID = 1L;
 
     public long requestId;
+    public int index;          // 在批量请求中的位置，单个请求为0；-1表示整批被拒绝
+    public String instanceId;
     public boolean success;
     public WFIBESystem.SecretKey secretKey;
     public long keyGenTime;
     public int keySize;
     public String errorMessage;
+    public long retryAfterMs;  // 被准入控制拒绝时建议的重试等待（毫秒），0表示未被拒绝
     public long timestamp;
 
     public KeyResponse() {
@@ -16,6 +16,8 @@ public class SenderClient {
     private int receiverPort;
     private EncryptionSystem encryptionSystem;
     private WFIBESystem.PublicParameters publicParams;
+    private int headerPoolCapacity = 0;  // 0表示不启用离线/在线模式
+    private String instanceId;  // KGC实例id，null表示默认实例
 
     // 性能统计
     private long totalMessages = 0;
@@ -32,6 +34,35 @@ public class SenderClient {
         this.encryptionSystem = new EncryptionSystem();
     }
 
+    /**
+     * 设置主公钥预计算表的内存预算（需在initialize之前调用）
+     */
+    public void setPrecomputationBudget(long budgetBytes) {
+        encryptionSystem.setPrecomputationBudget(budgetBytes);
+    }
+
+    /**
+     * 设置使用的KGC实例（需在initialize之前调用）
+     * 公共参数改为从KGC为该实例写出的 public_params_<id>.dat 读取，与实验控制器命令中的实例id对应
+     */
+    public void setInstanceId(String instanceId) {
+        this.instanceId = instanceId;
+    }
+
+    /**
+     * 设置密文头池容量，大于0时测试配置会启用离线/在线加密
+     */
+    public void setHeaderPoolCapacity(int capacity) {
+        this.headerPoolCapacity = capacity;
+    }
+
+    /**
+     * 设置分块DEM阈值（字节），0表示始终使用AES-CBC
+     */
+    public void setChunkedDemThreshold(int thresholdBytes) {
+        encryptionSystem.setChunkedDemThreshold(thresholdBytes);
+    }
+
     /**
      * 初始化客户端
      */
@@ -39,10 +70,11 @@ public class SenderClient {
         System.out.println("=== Initializing Sender Client ===");
 
         // 读取公共参数
-        File paramsFile = new File(SystemParameters.FilePaths.PUBLIC_PARAMS_FILE);
+        File paramsFile = new File(instanceId == null ?
+                SystemParameters.FilePaths.PUBLIC_PARAMS_FILE : "public_params_" + instanceId + ".dat");
         if (!paramsFile.exists()) {
             throw new FileNotFoundException(
-                    "Public parameters file not found. Please copy from KGC server.");
+                    "Public parameters file " + paramsFile + " not found. Please copy from KGC server.");
         }
 
         try (ObjectInputStream ois = new ObjectInputStream(
@@ -58,6 +90,7 @@ public class SenderClient {
 
         System.out.println("✓ Sender client initialized");
         System.out.println("  Target receiver: " + receiverIP + ":" + receiverPort);
+        System.out.println("  KGC instance: " + (instanceId != null ? instanceId : "default"));
     }
 
     /**
@@ -77,6 +110,12 @@ public class SenderClient {
         Map<String, Integer> senderPolicy = generateTestPolicy(attributeCount / 2);
         int threshold = calculateThreshold(senderPolicy);
 
+        EncryptionSystem.EncryptionProfile profile =
+                encryptionSystem.getProfile(senderAttributes, senderPolicy, threshold);
+        if (headerPoolCapacity > 0) {
+            encryptionSystem.startHeaderPool(profile, headerPoolCapacity);
+        }
+
         List<Long> encryptionTimes = new ArrayList<>();
         List<Long> transmissionTimes = new ArrayList<>();
         List<Integer> ciphertextSizes = new ArrayList<>();
@@ -88,7 +127,7 @@ public class SenderClient {
             // 加密
             long encStart = System.nanoTime();
             EncryptionSystem.EncryptionResult encResult =
-                    encryptionSystem.encrypt(message, senderAttributes, senderPolicy, threshold);
+                    encryptionSystem.encrypt(profile, message);
             long encEnd = System.nanoTime();
 
             if (!encResult.success) {
@@ -128,6 +167,7 @@ public class SenderClient {
 
         // 显示统计结果
         printStatistics(encryptionTimes, transmissionTimes, ciphertextSizes);
+        printHeaderPoolStatistics(profile);
     }
 
     /**
@@ -145,6 +185,12 @@ public class SenderClient {
         Map<String, Integer> senderPolicy = generateTestPolicy(attributeCount / 2);
         int threshold = calculateThreshold(senderPolicy);
 
+        EncryptionSystem.EncryptionProfile profile =
+                encryptionSystem.getProfile(senderAttributes, senderPolicy, threshold);
+        if (headerPoolCapacity > 0) {
+            encryptionSystem.startHeaderPool(profile, headerPoolCapacity);
+        }
+
         for (int b = 0; b < batches; b++) {
             System.out.println("Processing batch " + (b + 1) + "/" + batches);
 
@@ -154,21 +200,216 @@ public class SenderClient {
                 messages.add(generateRandomMessage(messageSizeKB * 1024));
             }
 
-            // 批量加密
-            long batchStart = System.nanoTime();
-            List<EncryptionSystem.EncryptionResult> results =
-                    encryptionSystem.encryptBatch(messages, senderAttributes,
-                            senderPolicy, threshold);
-            long batchEnd = System.nanoTime();
+            // 串行基准
+            long serialStart = System.nanoTime();
+            for (byte[] message : messages) {
+                encryptionSystem.encrypt(profile, message);
+            }
+            long serialTime = (System.nanoTime() - serialStart) / 1_000_000;
 
-            long batchTime = (batchEnd - batchStart) / 1_000_000;
-            double avgTimePerMessage = (double) batchTime / batchSize;
+            // 并行批量加密
+            EncryptionSystem.BatchEncryptionResult batch =
+                    encryptionSystem.encryptBatch(profile, messages);
 
+            System.out.printf("  Serial encryption time: %d ms (%.2f ms/message)\n",
+                    serialTime, (double) serialTime / batchSize);
             System.out.printf("  Batch encryption time: %d ms (%.2f ms/message)\n",
-                    batchTime, avgTimePerMessage);
+                    batch.totalTime, (double) batch.totalTime / batchSize);
+            System.out.printf("  Speedup: %.2fx, throughput: %.1f msgs/s, %.2f MB/s (%d/%d ok)\n",
+                    batch.totalTime > 0 ? (double) serialTime / batch.totalTime : 0,
+                    batch.messagesPerSecond, batch.megabytesPerSecond,
+                    batch.successCount, batchSize);
 
             // 批量发送
-            sendBatch(results);
+            sendBatch(batch.results);
+        }
+
+        printHeaderPoolStatistics(profile);
+    }
+
+    /**
+     * 固定基预计算加速比测试（仅加密，不发送）
+     * 加密走已编译的发送方配置，每条消息只有4次聚合底数幂运算和2次GT幂运算，与属性数无关；
+     * 因此对比的是聚合底数及GT的固定基表与通用powZn，属性数只影响一次性的配置编译时间
+     */
+    public void runPrecomputationBenchmark(int messageSizeKB, int iterations) {
+        System.out.println("\n=== Running Precomputation Benchmark ===");
+
+        EncryptionSystem.EncryptionStatistics stats = encryptionSystem.getStatistics();
+        System.out.printf("Precomputed bases: %d (%.1f MB, built in %d ms)\n",
+                stats.precomputedBases, stats.precomputationMemory / 1048576.0,
+                stats.precomputationTime);
+        System.out.println("Per-message cost: 4 aggregate-base pows + 2 GT pows (independent of attribute count)");
+        System.out.println();
+        System.out.println("Attributes | Profile compile (ms) | Aggregate powZn (ms) | Aggregate fixed-base (ms) | Speedup");
+
+        byte[] message = generateRandomMessage(messageSizeKB * 1024);
+
+        for (int attrs : SystemParameters.ExperimentConfig.ATTRIBUTE_COUNTS) {
+            Set<String> senderAttributes = generateTestAttributes(attrs);
+            Map<String, Integer> senderPolicy = generateTestPolicy(attrs / 2);
+            int threshold = calculateThreshold(senderPolicy);
+
+            EncryptionSystem.EncryptionProfile profile = encryptionSystem.getProfile(
+                    senderAttributes, senderPolicy, threshold);
+
+            double genericTime = measureEncryption(false, message, profile, iterations);
+            double fixedBaseTime = measureEncryption(true, message, profile, iterations);
+
+            System.out.printf("%10d | %20d | %20.2f | %25.2f | %6.2fx\n",
+                    attrs, profile.getCompileTime(), genericTime, fixedBaseTime, genericTime / fixedBaseTime);
+        }
+
+        encryptionSystem.setPrecomputationEnabled(true);
+    }
+
+    private double measureEncryption(boolean precomputation, byte[] message,
+                                     EncryptionSystem.EncryptionProfile profile, int iterations) {
+        encryptionSystem.setPrecomputationEnabled(precomputation);
+
+        // 预热
+        int warmup = Math.min(SystemParameters.ExperimentConfig.WARMUP_ROUNDS, iterations);
+        for (int i = 0; i < warmup; i++) {
+            encryptionSystem.encrypt(profile, message);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            encryptionSystem.encrypt(profile, message);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / iterations;
+    }
+
+    /**
+     * 流式加密测试：消息按块生成并加密，不在内存中保留完整明文或密文
+     */
+    public void runStreamingEncryptionTest(int messageSizeKB, int attributeCount,
+                                           int iterations) throws Exception {
+        System.out.println("\n=== Running Streaming Encryption Test ===");
+        System.out.println("  Message size: " + messageSizeKB + " KB");
+        System.out.println("  Chunk size: " + SystemParameters.NetworkConfig.BUFFER_SIZE + " bytes");
+
+        Set<String> senderAttributes = generateTestAttributes(attributeCount);
+        Map<String, Integer> senderPolicy = generateTestPolicy(attributeCount / 2);
+        int threshold = calculateThreshold(senderPolicy);
+        EncryptionSystem.EncryptionProfile profile =
+                encryptionSystem.getProfile(senderAttributes, senderPolicy, threshold);
+
+        // 重复使用一个随机块模拟任意长度的输入流
+        byte[] block = generateRandomMessage(SystemParameters.NetworkConfig.BUFFER_SIZE);
+        long messageBytes = messageSizeKB * 1024L;
+
+        long totalTime = 0;
+        long totalBytes = 0;
+        EncryptionSystem.StreamEncryptionResult result = null;
+
+        for (int i = 0; i < iterations; i++) {
+            try (InputStream in = new RepeatingInputStream(block, messageBytes)) {
+                result = encryptionSystem.encryptStream(profile, in, OutputStream.nullOutputStream());
+            }
+            totalTime += result.encryptionTime;
+            totalBytes += result.plaintextBytes;
+        }
+
+        if (result != null) {
+            System.out.printf("Header size: %d bytes, ciphertext size: %d bytes\n",
+                    result.headerSize, result.ciphertextBytes);
+            System.out.printf("Average encryption time: %.2f ms\n", (double) totalTime / iterations);
+            System.out.printf("Throughput: %.2f MB/s\n",
+                    totalTime > 0 ? totalBytes / 1048576.0 / (totalTime / 1000.0) : 0);
+        }
+    }
+
+    /**
+     * 对称层对比测试：AES-CBC与分块并行AES-GCM在大消息上的吞吐量
+     */
+    public void runDemComparisonTest(int attributeCount, int iterations) throws Exception {
+        System.out.println("\n=== Running DEM Comparison Test ===");
+        System.out.println("  Chunk size: " + SystemParameters.DemConfig.CHUNK_SIZE + " bytes");
+        System.out.println("  Cores: " + Runtime.getRuntime().availableProcessors());
+        System.out.println();
+
+        Set<String> senderAttributes = generateTestAttributes(attributeCount);
+        Map<String, Integer> senderPolicy = generateTestPolicy(attributeCount / 2);
+        int threshold = calculateThreshold(senderPolicy);
+        EncryptionSystem.EncryptionProfile profile =
+                encryptionSystem.getProfile(senderAttributes, senderPolicy, threshold);
+
+        int previousThreshold = encryptionSystem.getChunkedDemThreshold();
+        System.out.println("Message (KB) | CBC (MB/s) | Chunked GCM (MB/s) | Speedup | GCM decrypt (MB/s)");
+
+        for (int sizeKB : new int[]{1024, 10240}) {
+            byte[] message = generateRandomMessage(sizeKB * 1024);
+
+            encryptionSystem.setChunkedDemThreshold(0);
+            double cbc = measureThroughput(profile, message, iterations);
+
+            encryptionSystem.setChunkedDemThreshold(1);
+            double chunked = measureThroughput(profile, message, iterations);
+
+            // 接收方并行解密（DEM层单独测量）
+            byte[] key = generateRandomMessage(32);
+            byte[] ciphertext = ChunkedDEM.encrypt(key, message,
+                    SystemParameters.DemConfig.CHUNK_SIZE, encryptionSystem.getDemExecutor());
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                ChunkedDEM.decrypt(key, ciphertext, encryptionSystem.getDemExecutor());
+            }
+            double decryptSeconds = (System.nanoTime() - start) / 1e9;
+            double decrypt = message.length / 1048576.0 * iterations / decryptSeconds;
+
+            System.out.printf("%12d | %10.2f | %18.2f | %6.2fx | %18.2f\n",
+                    sizeKB, cbc, chunked, chunked / cbc, decrypt);
+        }
+
+        encryptionSystem.setChunkedDemThreshold(previousThreshold);
+    }
+
+    private double measureThroughput(EncryptionSystem.EncryptionProfile profile,
+                                     byte[] message, int iterations) {
+        // 预热
+        for (int i = 0; i < Math.min(3, iterations); i++) {
+            encryptionSystem.encrypt(profile, message);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            encryptionSystem.encrypt(profile, message);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return message.length / 1048576.0 * iterations / seconds;
+    }
+
+    /**
+     * 循环输出同一数据块的输入流
+     */
+    private static class RepeatingInputStream extends InputStream {
+        private final byte[] block;
+        private long remaining;
+        private int position = 0;
+
+        RepeatingInputStream(byte[] block, long length) {
+            this.block = block;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (remaining <= 0) return -1;
+            byte b = block[position];
+            position = (position + 1) % block.length;
+            remaining--;
+            return b & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (remaining <= 0) return -1;
+            int count = (int) Math.min(Math.min(length, remaining), block.length - position);
+            System.arraycopy(block, position, buffer, offset, count);
+            position = (position + count) % block.length;
+            remaining -= count;
+            return count;
         }
     }
 
@@ -370,10 +611,33 @@ public class SenderClient {
                 successfulSends, totalMessages);
     }
 
+    /**
+     * 打印密文头池统计
+     */
+    private void printHeaderPoolStatistics(EncryptionSystem.EncryptionProfile profile) {
+        EncryptionSystem.HeaderPoolStatistics stats =
+                encryptionSystem.getHeaderPoolStatistics(profile);
+        if (stats == null) {
+            return;
+        }
+
+        long served = stats.hits + stats.misses;
+        System.out.println("\n=== Header Pool Statistics ===");
+        System.out.printf("Pool depth: %d/%d (low-water mark: %d)\n",
+                stats.depth, stats.capacity, stats.minDepth);
+        System.out.printf("Refill rate: %.1f headers/s (%d produced)\n",
+                stats.refillRate, stats.produced);
+        System.out.printf("Pool misses: %d/%d (%.2f%%)\n", stats.misses, served,
+                served > 0 ? (double) stats.misses / served * 100 : 0);
+        System.out.println("Producer failures: " + stats.producerFailures);
+    }
+
     /**
      * 关闭客户端
      */
     public void shutdown() {
+        encryptionSystem.stopHeaderPools();
+
         if (performanceLog != null) {
             performanceLog.close();
         }
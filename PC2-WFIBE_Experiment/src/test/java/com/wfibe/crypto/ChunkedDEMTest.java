@@ -0,0 +1,114 @@
+package com.wfibe.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ChunkedDEM的往返正确性，以及篡改、重排、截断的拒绝
+ */
+class ChunkedDEMTest {
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final int HEADER_LENGTH = 16;
+    private static final int TAG_LENGTH = 16;
+
+    private final ExecutorService executor = ForkJoinPool.commonPool();
+    private final Random random = new Random(7);
+
+    @Test
+    void roundTrip() throws GeneralSecurityException {
+        byte[] key = randomBytes(32);
+        for (int length : new int[]{0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 5 * CHUNK_SIZE + 7}) {
+            byte[] message = randomBytes(length);
+            byte[] ciphertext = ChunkedDEM.encrypt(key, message, CHUNK_SIZE, executor);
+
+            assertEquals(HEADER_LENGTH + length + chunks(length) * TAG_LENGTH, ciphertext.length,
+                    "ciphertext length for " + length);
+            assertArrayEquals(message, ChunkedDEM.decrypt(key, ciphertext, executor), "round trip for " + length);
+        }
+    }
+
+    @Test
+    void rejectsWrongKey() {
+        byte[] ciphertext = ChunkedDEM.encrypt(randomBytes(32), randomBytes(3000), CHUNK_SIZE, executor);
+
+        assertThrows(GeneralSecurityException.class,
+                () -> ChunkedDEM.decrypt(randomBytes(32), ciphertext, executor));
+    }
+
+    @Test
+    void rejectsTamperedChunk() {
+        byte[] key = randomBytes(32);
+        byte[] ciphertext = ChunkedDEM.encrypt(key, randomBytes(3 * CHUNK_SIZE), CHUNK_SIZE, executor);
+
+        // 依次翻转每一块中的一位，以及一个标签字节
+        for (int offset : new int[]{HEADER_LENGTH, chunkOffset(1) + 100, chunkOffset(2) + CHUNK_SIZE + 3}) {
+            byte[] tampered = ciphertext.clone();
+            tampered[offset] ^= 1;
+            assertThrows(GeneralSecurityException.class, () -> ChunkedDEM.decrypt(key, tampered, executor));
+        }
+    }
+
+    @Test
+    void rejectsTamperedHeader() {
+        byte[] key = randomBytes(32);
+        byte[] ciphertext = ChunkedDEM.encrypt(key, randomBytes(2 * CHUNK_SIZE), CHUNK_SIZE, executor);
+
+        byte[] tampered = ciphertext.clone();
+        tampered[3] ^= 1;  // 块大小
+        assertThrows(GeneralSecurityException.class, () -> ChunkedDEM.decrypt(key, tampered, executor));
+    }
+
+    @Test
+    void rejectsReorderedChunks() {
+        byte[] key = randomBytes(32);
+        byte[] ciphertext = ChunkedDEM.encrypt(key, randomBytes(3 * CHUNK_SIZE), CHUNK_SIZE, executor);
+
+        int stride = CHUNK_SIZE + TAG_LENGTH;
+        byte[] reordered = ciphertext.clone();
+        System.arraycopy(ciphertext, chunkOffset(0), reordered, chunkOffset(1), stride);
+        System.arraycopy(ciphertext, chunkOffset(1), reordered, chunkOffset(0), stride);
+
+        assertThrows(GeneralSecurityException.class, () -> ChunkedDEM.decrypt(key, reordered, executor));
+    }
+
+    @Test
+    void rejectsTruncatedCiphertext() {
+        byte[] key = randomBytes(32);
+        byte[] ciphertext = ChunkedDEM.encrypt(key, randomBytes(3 * CHUNK_SIZE), CHUNK_SIZE, executor);
+
+        // 直接截短：长度与格式头不符
+        for (int length : new int[]{0, HEADER_LENGTH - 1, HEADER_LENGTH, ciphertext.length - 1}) {
+            byte[] truncated = Arrays.copyOf(ciphertext, length);
+            assertThrows(GeneralSecurityException.class, () -> ChunkedDEM.decrypt(key, truncated, executor));
+        }
+
+        // 去掉最后一块并改写格式头使长度自洽：格式头参与每块的认证，仍应失败
+        byte[] dropped = Arrays.copyOf(ciphertext, chunkOffset(2));
+        ByteBuffer.wrap(dropped, 0, HEADER_LENGTH)
+                .putInt(CHUNK_SIZE)
+                .putInt(2)
+                .putLong(2 * CHUNK_SIZE);
+        assertThrows(GeneralSecurityException.class, () -> ChunkedDEM.decrypt(key, dropped, executor));
+    }
+
+    private static int chunks(int length) {
+        return Math.max(1, (length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    private static int chunkOffset(int index) {
+        return HEADER_LENGTH + index * (CHUNK_SIZE + TAG_LENGTH);
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,69 @@
+package com.wfibe.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SparseVector的构造、稠密还原和相等性
+ */
+class SparseVectorTest {
+
+    @Test
+    void fromMapKeepsNonZeroEntriesInIndexOrder() {
+        SortedMap<Integer, Integer> entries = new TreeMap<>();
+        entries.put(7, -2);
+        entries.put(1, 3);
+        entries.put(4, 0);
+
+        SparseVector vector = SparseVector.fromMap(10, entries);
+
+        assertEquals(10, vector.getDimension());
+        assertEquals(2, vector.size());
+        assertEquals(1, vector.getIndex(0));
+        assertEquals(3, vector.getWeight(0));
+        assertEquals(7, vector.getIndex(1));
+        assertEquals(-2, vector.getWeight(1));
+        assertArrayEquals(new int[]{0, 3, 0, 0, 0, 0, 0, -2, 0, 0}, vector.toDense());
+    }
+
+    @Test
+    void denseRoundTrip() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 100; trial++) {
+            int[] dense = new int[1 + random.nextInt(64)];
+            for (int i = 0; i < dense.length; i++) {
+                dense[i] = random.nextInt(4) == 0 ? random.nextInt(11) - 5 : 0;
+            }
+            assertArrayEquals(dense, SparseVector.fromDense(dense).toDense());
+        }
+    }
+
+    @Test
+    void emptyVector() {
+        SparseVector vector = SparseVector.fromDense(new int[5]);
+
+        assertEquals(0, vector.size());
+        assertArrayEquals(new int[5], vector.toDense());
+    }
+
+    @Test
+    void equalsAndHashCodeAreConsistent() {
+        SortedMap<Integer, Integer> entries = new TreeMap<>();
+        entries.put(2, 5);
+        entries.put(3, 0);
+        SparseVector a = SparseVector.fromMap(6, entries);
+        SparseVector b = SparseVector.fromDense(new int[]{0, 0, 5, 0, 0, 0});
+
+        assertEquals(a, b);
+        assertEquals(b, a);
+        assertEquals(a.hashCode(), b.hashCode());
+
+        assertNotEquals(a, SparseVector.fromDense(new int[]{0, 0, 5, 0, 0}));    // 维度不同
+        assertNotEquals(a, SparseVector.fromDense(new int[]{0, 0, 4, 0, 0, 0})); // 权重不同
+        assertNotEquals(a, SparseVector.fromDense(new int[]{0, 5, 0, 0, 0, 0})); // 下标不同
+        assertNotEquals(a, null);
+    }
+}